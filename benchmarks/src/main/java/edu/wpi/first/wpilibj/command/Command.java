@@ -0,0 +1,27 @@
+package edu.wpi.first.wpilibj.command;
+
+/**
+ * Headless stand-in for the WPILib Command so the library can be benchmarked without WPILib. Only what the library
+ * uses is here, and nothing is ever scheduled.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public abstract class Command {
+
+	protected void requires(Subsystem subsystem) {
+	}
+
+	protected void initialize() {
+	}
+
+	protected void execute() {
+	}
+
+	protected abstract boolean isFinished();
+
+	protected void end() {
+	}
+
+	protected void interrupted() {
+	}
+}
@@ -0,0 +1,15 @@
+package edu.wpi.first.wpilibj.command;
+
+/**
+ * Headless stand-in for the WPILib Subsystem so the library can be benchmarked without WPILib. Only what the library
+ * uses is here.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public abstract class Subsystem {
+
+	/**
+	 * Sets the default command of the subsystem. Never called off the robot.
+	 */
+	protected abstract void initDefaultCommand();
+}
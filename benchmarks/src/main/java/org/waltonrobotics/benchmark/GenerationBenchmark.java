@@ -0,0 +1,76 @@
+package org.waltonrobotics.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.waltonrobotics.controller.DriveKinematics;
+import org.waltonrobotics.controller.Path;
+import org.waltonrobotics.controller.Pose;
+import org.waltonrobotics.motion.BezierCurve;
+import org.waltonrobotics.motion.Spline;
+
+/**
+ * Measures generating Bezier curves and splines from scratch across the number of points and the number of steps per
+ * curve.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerationBenchmark {
+
+	@Param({"2", "4", "8", "16"})
+	private int knotCount;
+
+	@Param({"50", "200"})
+	private int steps;
+
+	private DriveKinematics kinematics;
+	private List<Pose> knots;
+
+	@Setup
+	public void setUp() {
+		kinematics = new DriveKinematics(0.70485, steps, false);
+
+		// A zig zag across the field
+		knots = new ArrayList<>(knotCount);
+		for (int i = 0; i < knotCount; i++) {
+			knots.add(new Pose(i * 1.5, ((i % 2) == 0) ? 0 : 1, 0));
+		}
+	}
+
+	/**
+	 * A single curve with every point as a control point
+	 */
+	@Benchmark
+	public Path bezierCurve() {
+		BezierCurve curve = new BezierCurve(kinematics, 3, 2, 0, 0, false, knots);
+		curve.generateAll();
+		return curve;
+	}
+
+	/**
+	 * A spline through every point
+	 */
+	@Benchmark
+	public Path spline() {
+		Spline spline = new Spline(kinematics, 3, 2, 0, 0, 0, 0, false, 1, 1, knots);
+		spline.generateAll();
+		return spline;
+	}
+}
@@ -0,0 +1,51 @@
+package org.waltonrobotics.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.waltonrobotics.controller.DriveKinematics;
+import org.waltonrobotics.controller.Path;
+import org.waltonrobotics.controller.Pose;
+import org.waltonrobotics.motion.PointTurn;
+
+/**
+ * Measures generating a point turn from scratch across the number of steps
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PointTurnBenchmark {
+
+	@Param({"50", "200"})
+	private int steps;
+
+	private DriveKinematics kinematics;
+	private Pose startPosition;
+
+	@Setup
+	public void setUp() {
+		kinematics = new DriveKinematics(0.70485, steps, false);
+		startPosition = new Pose(0, 0, 0);
+	}
+
+	@Benchmark
+	public Path pointTurn() {
+		PointTurn pointTurn = new PointTurn(kinematics, 1, 1, startPosition, StrictMath.toRadians(270));
+		pointTurn.generateAll();
+		return pointTurn;
+	}
+}
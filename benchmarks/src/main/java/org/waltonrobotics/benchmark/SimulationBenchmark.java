@@ -0,0 +1,63 @@
+package org.waltonrobotics.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.waltonrobotics.controller.Path;
+import org.waltonrobotics.controller.Pose;
+import org.waltonrobotics.controller.Trajectory;
+import org.waltonrobotics.motion.PrecomputedPath;
+import org.waltonrobotics.motion.Spline;
+import org.waltonrobotics.simulation.DrivetrainGains;
+import org.waltonrobotics.simulation.FixedGainsDrivetrain;
+import org.waltonrobotics.simulation.SimulatedDrivetrain;
+
+/**
+ * Measures whole closed loop runs of a spline on the simulated drivetrain, as used for tuning and load testing
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimulationBenchmark {
+
+	private static final DrivetrainGains GAINS = new DrivetrainGains(0.70485, 0.3, 0.05, 0, 1, 1, 1, 0.01, 0.01, 3,
+		2);
+
+	private SimulatedDrivetrain drivetrain;
+	private Pose startPosition;
+	private List<Pose> keyPoints;
+	private Trajectory trajectory;
+
+	@Setup
+	public void setUp() {
+		drivetrain = new FixedGainsDrivetrain(GAINS);
+
+		startPosition = new Pose(0, 0, 0);
+		keyPoints = Arrays.asList(startPosition, new Pose(1, 0.5), new Pose(2, 2), new Pose(4, 2));
+		Spline spline = new Spline(drivetrain.getKinematics(), 2, 2, 0, 0, 0, 0, false, 1, 1, keyPoints);
+		spline.generateAll();
+		trajectory = spline.getTrajectory();
+		trajectory.makeReadOnly();
+	}
+
+	@Benchmark
+	public boolean runSpline() {
+		Path path = new PrecomputedPath(drivetrain.getKinematics(), 2, 2, keyPoints, trajectory);
+		return drivetrain.runPaths(startPosition, 30, path);
+	}
+}
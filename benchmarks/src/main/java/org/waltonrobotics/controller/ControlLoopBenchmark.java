@@ -0,0 +1,85 @@
+package org.waltonrobotics.controller;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.waltonrobotics.MotionLogger;
+import org.waltonrobotics.motion.PrecomputedPath;
+import org.waltonrobotics.motion.Spline;
+import org.waltonrobotics.simulation.DrivetrainGains;
+import org.waltonrobotics.simulation.FixedGainsDrivetrain;
+
+/**
+ * Measures one tick of the MotionController following a spline. The wheels are moved by the powers of the previous
+ * tick, and the spline is started again whenever it finishes, so every tick is a moving tick.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControlLoopBenchmark {
+
+	private static final double PERIOD = 0.005;
+	private static final double MAX_VELOCITY = 3;
+	private static final DrivetrainGains GAINS = new DrivetrainGains(0.70485, 0.3, 0.05, 0, 1, 1, 1, 0.01, 0.01,
+		MAX_VELOCITY, 2);
+
+	// Only its gains are used, the benchmark moves the wheels itself
+	private final FixedGainsDrivetrain drivetrain = new FixedGainsDrivetrain(GAINS);
+	private MotionController controller;
+	private Pose startPosition;
+	private List<Pose> keyPoints;
+	private Trajectory trajectory;
+	private double time;
+	private double leftLength;
+	private double rightLength;
+
+	@Setup
+	public void setUp() {
+		controller = new MotionController(drivetrain, new MotionLogger(""));
+		startPosition = new Pose(0, 0, 0);
+		keyPoints = Arrays.asList(startPosition, new Pose(1, 0.5), new Pose(2, 2), new Pose(4, 2));
+		Spline spline = new Spline(controller.getKinematics(), 2, 2, 0, 0, 0, 0, false, 1, 1, keyPoints);
+		spline.generateAll();
+		trajectory = spline.getTrajectory();
+		trajectory.makeReadOnly();
+		restart();
+	}
+
+	/**
+	 * Puts the robot back at the start and queues the spline again
+	 */
+	private void restart() {
+		time = 0;
+		leftLength = 0;
+		rightLength = 0;
+		controller.initializeMotion(startPosition);
+		controller.addPaths(new PrecomputedPath(controller.getKinematics(), 2, 2, keyPoints, trajectory));
+	}
+
+	@Benchmark
+	public double tick() {
+		if (controller.isFinished()) {
+			restart();
+		}
+		controller.calculateSpeeds(leftLength, rightLength, time);
+		time += PERIOD;
+		leftLength += controller.getLeftPower() * MAX_VELOCITY * PERIOD;
+		rightLength += controller.getRightPower() * MAX_VELOCITY * PERIOD;
+		return leftLength;
+	}
+}
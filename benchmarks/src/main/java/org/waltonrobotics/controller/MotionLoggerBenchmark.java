@@ -0,0 +1,74 @@
+package org.waltonrobotics.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.waltonrobotics.MotionLogger;
+import org.waltonrobotics.MotionLogger.LogFormat;
+
+/**
+ * Measures writing the log to a file in each log format. 3000 rows is a 15 second autonomous at the 5 ms period,
+ * 30000 rows is a whole 150 second match.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MotionLoggerBenchmark {
+
+	@Param({"3000", "30000"})
+	private int logSize;
+	@Param({"CSV", "BINARY"})
+	private LogFormat logFormat;
+
+	private File directory;
+	private MotionLogger motionLogger;
+
+	@Setup
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("motion-logs").toFile();
+		motionLogger = new MotionLogger(directory.getPath() + File.separator);
+		motionLogger.setLogFormat(logFormat);
+		for (int i = 0; i < logSize; i++) {
+			double time = i * 0.005;
+			Pose target = new Pose(time, StrictMath.sin(time), StrictMath.cos(time));
+			Pose actual = target.offset(0.01, 0.01, 0.001);
+			motionLogger.addMotionData(new MotionData(actual, target, new ErrorVector(0.01, -0.02, 0.001),
+				new RobotPair(0.5 + (0.001 * (i % 100)), 0.5 - (0.001 * (i % 100)), time), 1,
+				MotionState.MOVING));
+		}
+	}
+
+	@Benchmark
+	public void writeMotionData() {
+		motionLogger.writeMotionData();
+	}
+
+	@TearDown
+	public void tearDown() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+}
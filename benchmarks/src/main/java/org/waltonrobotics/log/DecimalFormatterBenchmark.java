@@ -0,0 +1,95 @@
+package org.waltonrobotics.log;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares formatting the twelve decimal columns of CSV rows into a direct buffer with StringBuilder.append(double),
+ * which the log used to do, and with DecimalFormatter. Each call formats every row once.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecimalFormatterBenchmark {
+
+	private static final int COLUMN_COUNT = 12;
+
+	@Param({"3000", "30000"})
+	private int rowCount;
+
+	private double[] values;
+	private ByteBuffer buffer;
+	private StringBuilder rowBuilder;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(3);
+		values = new double[rowCount * COLUMN_COUNT];
+		for (int row = 0; row < rowCount; row++) {
+			int start = row * COLUMN_COUNT;
+			values[start] = 1000 + (row * 0.005);
+			for (int column = 1; column < COLUMN_COUNT; column++) {
+				values[start + column] = (random.nextDouble() * 10) - 5;
+			}
+		}
+		buffer = ByteBuffer.allocateDirect(64 * 1024);
+		rowBuilder = new StringBuilder(256);
+	}
+
+	@Benchmark
+	public int stringBuilder() {
+		int written = 0;
+		buffer.clear();
+		for (int row = 0; row < rowCount; row++) {
+			rowBuilder.setLength(0);
+			for (int column = 0; column < COLUMN_COUNT; column++) {
+				rowBuilder.append(values[(row * COLUMN_COUNT) + column]);
+				rowBuilder.append(", ");
+			}
+			rowBuilder.append('\n');
+			if (buffer.remaining() < rowBuilder.length()) {
+				written += buffer.position();
+				buffer.clear();
+			}
+			for (int i = 0; i < rowBuilder.length(); i++) {
+				buffer.put((byte) rowBuilder.charAt(i));
+			}
+		}
+		return written + buffer.position();
+	}
+
+	@Benchmark
+	public int decimalFormatter() {
+		int written = 0;
+		buffer.clear();
+		for (int row = 0; row < rowCount; row++) {
+			if (buffer.remaining() < (COLUMN_COUNT * (DecimalFormatter.MAX_SIZE + 2))) {
+				written += buffer.position();
+				buffer.clear();
+			}
+			for (int column = 0; column < COLUMN_COUNT; column++) {
+				DecimalFormatter.putDouble(buffer, values[(row * COLUMN_COUNT) + column], (column == 0) ? 6 : 4);
+				DecimalFormatter.putAscii(buffer, ", ");
+			}
+			buffer.put((byte) '\n');
+		}
+		return written + buffer.position();
+	}
+}
@@ -2,6 +2,7 @@ package org.waltonrobotics;
 
 import edu.wpi.first.wpilibj.command.Subsystem;
 import org.waltonrobotics.command.SimpleMotion;
+import org.waltonrobotics.controller.DriveKinematics;
 import org.waltonrobotics.controller.MotionController;
 import org.waltonrobotics.controller.Path;
 import org.waltonrobotics.controller.Pose;
@@ -26,6 +27,18 @@ public abstract class AbstractDrivetrain extends Subsystem {
 		SimpleMotion.setDrivetrain(this);
 	}
 
+	/**
+	 * Create the static drivetrain after creating the motion logger so you can use the MotionContoller. The
+	 * MotionController uses the kinematics instead of calling getRobotWidth() while this is being constructed.
+	 *
+	 * @param kinematics - the robot width and generation settings of this drivetrain
+	 */
+	protected AbstractDrivetrain(MotionLogger motionLogger, DriveKinematics kinematics) {
+		this.motionLogger = motionLogger;
+		controller = new MotionController(this, kinematics, motionLogger);
+		SimpleMotion.setDrivetrain(this);
+	}
+
 	protected AbstractDrivetrain() {
 		this(new MotionLogger(""));
 	}
@@ -34,6 +47,20 @@ public abstract class AbstractDrivetrain extends Subsystem {
 		return motionLogger;
 	}
 
+	/**
+	 * @return the robot width and generation settings to make this drivetrain's paths with
+	 */
+	public final DriveKinematics getKinematics() {
+		return controller.getKinematics();
+	}
+
+	/**
+	 * @return the MotionController that runs this drivetrain's motions
+	 */
+	public final MotionController getMotionController() {
+		return controller;
+	}
+
 	/**
 	 * return a new robot pair with left.getDistance(), right.getDistance()
 	 *
@@ -41,6 +68,19 @@ public abstract class AbstractDrivetrain extends Subsystem {
 	 */
 	public abstract RobotPair getWheelPositions();
 
+	/**
+	 * The MotionController calls this every tick. Override it to read the encoders without making a new RobotPair.
+	 *
+	 * @param wheelPositions the array to fill with the encoder distances and the time, indexed by RobotPair.LEFT,
+	 * RobotPair.RIGHT and RobotPair.TIME
+	 */
+	public void getWheelPositions(double[] wheelPositions) {
+		RobotPair pair = getWheelPositions();
+		wheelPositions[RobotPair.LEFT] = pair.getLeft();
+		wheelPositions[RobotPair.RIGHT] = pair.getRight();
+		wheelPositions[RobotPair.TIME] = pair.getTime();
+	}
+
 	/**
 	 * return the width of t he robot from teh outside of the wheel on the left side and the right side
 	 *
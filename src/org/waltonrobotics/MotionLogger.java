@@ -1,62 +1,481 @@
 package org.waltonrobotics;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
-import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import org.waltonrobotics.controller.MotionData;
+import org.waltonrobotics.controller.MotionState;
+import org.waltonrobotics.log.CapturePolicy;
+import org.waltonrobotics.log.DecimalFormatter;
+import org.waltonrobotics.log.MappedMotionLog;
+import org.waltonrobotics.log.MotionLogFile;
 
 /**
- * This class is used to log MotionData during autonomous
+ * This class is used to log MotionData during autonomous. The data is kept in primitive columns that are allocated up
+ * front and used as a ring, so the log never grows. What happens when the ring is full is set by the OverflowPolicy.
+ * <br>
+ * One thread, the MotionController, adds ticks. Adding a tick is a few array stores and never locks, waits or
+ * allocates. Ticks are written on other threads: they are encoded in batches into a reused direct buffer and written to
+ * a FileChannel, so writing never holds up the producer and never builds the whole file in memory.
+ * <br>
+ * Files are written as CSV unless the LogFormat is changed to BINARY, which is about a fifth of the size.
+ * <br>
+ * Every tick is kept unless a CapturePolicy is set, which can keep only some of the steady state ticks and every tick
+ * around triggers like a large error or a new path.
  *
  * @author Russell Newton, WaltonRobotics
  */
 public class MotionLogger {
 
-	private final AbstractList<MotionData> motionDataList;
+	/**
+	 * A whole 150 second match at the 5 ms controller period
+	 */
+	public static final int DEFAULT_CAPACITY = 30000;
+	/**
+	 * How often the spill thread writes new ticks unless changed, 100 milliseconds
+	 */
+	public static final long DEFAULT_SPILL_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	/**
+	 * The most ticks encoded between writes to the file unless changed, about a second at the 5 ms controller period
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 256;
+	/**
+	 * The digits after the decimal point of each column in CSV files unless changed: microseconds for the time, a tenth
+	 * of a millimeter for lengths, a hundred thousandth of a radian, under a thousandth of a degree, for angles and
+	 * four digits for powers
+	 */
+	private static final int[] DEFAULT_DIGITS = {6, 4, 4, 5, 4, 4, 5, 4, 4, 5, 4, 4};
+	private static final int BUFFER_SIZE = 64 * 1024;
+	// 12 decimal columns, the path number and the motion state, each with a separator
+	private static final int MAX_ROW_SIZE = 14 * (DecimalFormatter.MAX_SIZE + 2);
+
 	private final String filePath;
+	private final int capacity;
+	private final OverflowPolicy overflowPolicy;
+	private final double[] time;
+	private final double[] actualX;
+	private final double[] actualY;
+	private final double[] actualAngle;
+	private final double[] targetX;
+	private final double[] targetY;
+	private final double[] targetAngle;
+	private final double[] crossTrackError;
+	private final double[] lagError;
+	private final double[] angleError;
+	private final double[] leftPower;
+	private final double[] rightPower;
+	private final int[] pathNumber;
+	private final MotionState[] motionState;
+	// The number of ticks ever added. Tick i is at index i % capacity.
+	private final AtomicLong added = new AtomicLong();
+	// The first tick that has not been written to the spill file
+	private final AtomicLong spilled = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final Object writeLock = new Object();
+	// Only used holding writeLock
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final StringBuilder rowBuilder = new StringBuilder(256);
+	private final int[] digits = DEFAULT_DIGITS.clone();
+	private final Map<String, String> metadata = new LinkedHashMap<>();
+	private FileChannel spillChannel;
+	private LogFormat spillFormat;
+	private String spillFileName;
+	private volatile LogFormat logFormat = LogFormat.CSV;
+	private volatile MappedMotionLog crashLog;
+	private volatile CapturePolicy capturePolicy = CapturePolicy.EVERY_TICK;
+	private final AtomicLong triggerCount = new AtomicLong();
+	// Only used by the thread adding ticks
+	private volatile PreTriggerRing preTriggerRing;
+	private long seenCount;
+	private int postTriggerTicksLeft;
+	private boolean hasPreviousTick;
+	private MotionState previousMotionState;
+	private int previousPathNumber;
+	private volatile long spillPeriodNanos = DEFAULT_SPILL_PERIOD_NANOS;
+	private volatile int batchSize = DEFAULT_BATCH_SIZE;
+	private Thread spillThread;
 
 	/**
 	 * Call this in robotInit() before making the drivetrain
 	 *
 	 * @param filePath - Where do you want to save the logs? To save to the roboRIO, use base directory "/home/lvuser/".
 	 * To save to a thumb drive, use winSCP or similar program to find the right filepath
+	 * @param capacity - the number of ticks to keep
+	 * @param overflowPolicy - what to do when the log is full
 	 */
-	public MotionLogger(String filePath) {
-		motionDataList = new LinkedList<>();
+	public MotionLogger(String filePath, int capacity, OverflowPolicy overflowPolicy) {
+		if (overflowPolicy == null) {
+			throw new IllegalArgumentException("overflowPolicy must not be null");
+		}
 		this.filePath = filePath;
+		this.capacity = Math.max(capacity, 1);
+		this.overflowPolicy = overflowPolicy;
+		time = new double[this.capacity];
+		actualX = new double[this.capacity];
+		actualY = new double[this.capacity];
+		actualAngle = new double[this.capacity];
+		targetX = new double[this.capacity];
+		targetY = new double[this.capacity];
+		targetAngle = new double[this.capacity];
+		crossTrackError = new double[this.capacity];
+		lagError = new double[this.capacity];
+		angleError = new double[this.capacity];
+		leftPower = new double[this.capacity];
+		rightPower = new double[this.capacity];
+		pathNumber = new int[this.capacity];
+		motionState = new MotionState[this.capacity];
+
+		if (overflowPolicy == OverflowPolicy.SPILL_TO_DISK) {
+			spillThread = new Thread(new Spiller(), "MotionLogger spill");
+			spillThread.setDaemon(true);
+			spillThread.setPriority(Thread.MIN_PRIORITY);
+			spillThread.start();
+		}
+	}
+
+	/**
+	 * Call this in robotInit() before making the drivetrain. When the log is full the oldest ticks are overwritten.
+	 *
+	 * @param filePath - Where do you want to save the logs? To save to the roboRIO, use base directory "/home/lvuser/".
+	 * To save to a thumb drive, use winSCP or similar program to find the right filepath
+	 * @param capacity - the number of ticks to keep
+	 */
+	public MotionLogger(String filePath, int capacity) {
+		this(filePath, capacity, OverflowPolicy.OVERWRITE_OLDEST);
+	}
+
+	/**
+	 * Call this in robotInit() before making the drivetrain
+	 *
+	 * @param filePath - Where do you want to save the logs? To save to the roboRIO, use base directory "/home/lvuser/".
+	 * To save to a thumb drive, use winSCP or similar program to find the right filepath
+	 */
+	public MotionLogger(String filePath) {
+		this(filePath, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Adds the data of a MotionData to the log
+	 */
+	public final void addMotionData(MotionData dataAdd) {
+		addMotionData(dataAdd.getPowers().getTime(),
+			dataAdd.getActualPose().getX(), dataAdd.getActualPose().getY(), dataAdd.getActualPose().getAngle(),
+			dataAdd.getTargetPose().getX(), dataAdd.getTargetPose().getY(), dataAdd.getTargetPose().getAngle(),
+			dataAdd.getError().getXTrack(), dataAdd.getError().getLag(), dataAdd.getError().getAngle(),
+			dataAdd.getPowers().getLeft(), dataAdd.getPowers().getRight(), dataAdd.getPathNumber(),
+			dataAdd.getCurrentMotionState());
+	}
+
+	/**
+	 * This is called in the MotionController every tick. Only one thread may add ticks. It never locks or allocates.
+	 * The CapturePolicy decides if the tick is kept. The crash log, if there is one, gets every tick.
+	 */
+	public final void addMotionData(double time, double actualX, double actualY, double actualAngle,
+		double targetX, double targetY, double targetAngle, double crossTrackError, double lagError,
+		double angleError, double leftPower, double rightPower, int pathNumber, MotionState motionState) {
+		MappedMotionLog crashLog = this.crashLog;
+		if (crashLog != null) {
+			crashLog.append(time, actualX, actualY, actualAngle, targetX, targetY, targetAngle, crossTrackError,
+				lagError, angleError, leftPower, rightPower, pathNumber, motionState);
+		}
+
+		CapturePolicy capturePolicy = this.capturePolicy;
+		if (capturePolicy.getDecimation() == 1) {
+			// Every tick is kept, so there is nothing to trigger
+			store(time, actualX, actualY, actualAngle, targetX, targetY, targetAngle, crossTrackError, lagError,
+				angleError, leftPower, rightPower, pathNumber, motionState);
+			return;
+		}
+
+		boolean isTriggered = capturePolicy.isErrorTrigger(crossTrackError, lagError, angleError)
+			|| (hasPreviousTick && (((motionState != previousMotionState) && capturePolicy.isStateChangeTrigger())
+			|| ((pathNumber != previousPathNumber) && capturePolicy.isPathChangeTrigger())));
+		hasPreviousTick = true;
+		previousMotionState = motionState;
+		previousPathNumber = pathNumber;
+		boolean isDecimationTick = (seenCount % capturePolicy.getDecimation()) == 0;
+		seenCount++;
+
+		PreTriggerRing preTriggerRing = this.preTriggerRing;
+		if (isTriggered) {
+			triggerCount.lazySet(triggerCount.get() + 1);
+			if (preTriggerRing != null) {
+				preTriggerRing.flush(true);
+			}
+			postTriggerTicksLeft = capturePolicy.getPostTriggerTicks();
+			store(time, actualX, actualY, actualAngle, targetX, targetY, targetAngle, crossTrackError, lagError,
+				angleError, leftPower, rightPower, pathNumber, motionState);
+		} else if (postTriggerTicksLeft > 0) {
+			postTriggerTicksLeft--;
+			store(time, actualX, actualY, actualAngle, targetX, targetY, targetAngle, crossTrackError, lagError,
+				angleError, leftPower, rightPower, pathNumber, motionState);
+		} else if (preTriggerRing != null) {
+			preTriggerRing.add(time, actualX, actualY, actualAngle, targetX, targetY, targetAngle, crossTrackError,
+				lagError, angleError, leftPower, rightPower, pathNumber, motionState, isDecimationTick);
+		} else if (isDecimationTick) {
+			store(time, actualX, actualY, actualAngle, targetX, targetY, targetAngle, crossTrackError, lagError,
+				angleError, leftPower, rightPower, pathNumber, motionState);
+		}
+	}
+
+	/**
+	 * Puts a kept tick in the log. If the log is full and spilling to disk, and the spill thread has fallen a whole
+	 * capacity behind, the tick is dropped and counted.
+	 */
+	private void store(double time, double actualX, double actualY, double actualAngle, double targetX,
+		double targetY, double targetAngle, double crossTrackError, double lagError, double angleError,
+		double leftPower, double rightPower, int pathNumber, MotionState motionState) {
+		long tick = added.get();
+		if ((overflowPolicy == OverflowPolicy.SPILL_TO_DISK) && ((tick - spilled.get()) >= capacity)) {
+			droppedCount.lazySet(droppedCount.get() + 1);
+			return;
+		}
+		int i = (int) (tick % capacity);
+		this.time[i] = time;
+		this.actualX[i] = actualX;
+		this.actualY[i] = actualY;
+		this.actualAngle[i] = actualAngle;
+		this.targetX[i] = targetX;
+		this.targetY[i] = targetY;
+		this.targetAngle[i] = targetAngle;
+		this.crossTrackError[i] = crossTrackError;
+		this.lagError[i] = lagError;
+		this.angleError[i] = angleError;
+		this.leftPower[i] = leftPower;
+		this.rightPower[i] = rightPower;
+		this.pathNumber[i] = pathNumber;
+		this.motionState[i] = motionState;
+		added.lazySet(tick + 1);
+	}
+
+	/**
+	 * Keeps the steady state ticks that are still waiting in the pre-trigger ring. The MotionController calls this when
+	 * it stops, from the thread that stopped it. Call it while nothing is adding ticks.
+	 */
+	public final void flushCapture() {
+		PreTriggerRing preTriggerRing = this.preTriggerRing;
+		if (preTriggerRing != null) {
+			preTriggerRing.flush(false);
+		}
+	}
+
+	/**
+	 * Call this in autonomousInit() to clear the log, while nothing is adding ticks. When spilling to disk, the ticks
+	 * that were not written are thrown away and the next tick starts a new file.
+	 */
+	public final void initialize() {
+		resetCapture();
+		synchronized (writeLock) {
+			closeSpillFile();
+			Arrays.fill(motionState, null);
+			droppedCount.set(0);
+			spilled.set(0);
+			added.set(0);
+		}
+	}
+
+	/**
+	 * @return the number of ticks in the log that have not been written to the spill file
+	 */
+	public final int size() {
+		long added = this.added.get();
+		if (overflowPolicy == OverflowPolicy.SPILL_TO_DISK) {
+			return (int) (added - spilled.get());
+		}
+		return (int) Math.min(added, capacity);
 	}
 
 	/**
-	 * This is called in the MotionController to add MotionData to the motionDataList that MotionLogger has
+	 * Call this in disabledInit() to send the log to a file in the log format. When overwriting, this writes the ticks
+	 * in the ring to a new file. When spilling to disk, most ticks have already been written during the run, so this
+	 * only writes the last batch and closes the file.
+	 * <br>
+	 * When overwriting, the ring is read without locking while ticks could still be added, so stop the
+	 * MotionController first. A tick added while the file is being written can replace a row as it is encoded.
 	 */
-	public final synchronized void addMotionData(MotionData dataAdd) {
-		motionDataList.add(dataAdd);
+	public final void writeMotionData() {
+		synchronized (writeLock) {
+			if (overflowPolicy == OverflowPolicy.SPILL_TO_DISK) {
+				spill();
+				if (spillChannel != null) {
+					System.out.println("File " + spillFileName + " has been made!");
+				}
+				closeSpillFile();
+				return;
+			}
+
+			long end = added.get();
+			if (end == 0) {
+				return;
+			}
+			LogFormat format = logFormat;
+			String fileName = new SimpleDateFormat("yyyy-MM-dd hh-mm-ss").format(new Date());
+			try (FileChannel channel = openFile(fileName, format)) {
+				for (long tick = Math.max(0, end - capacity); tick < end; tick++) {
+					encodeTick(channel, format, tick);
+				}
+				writeBuffer(channel);
+				System.out.println("File " + fileName + " has been made!");
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Stops the spill thread after it writes the ticks that are left, for a log that is no longer used. Ticks added
+	 * afterwards are only written by writeMotionData(), and are dropped once a whole capacity of them is waiting.
+	 */
+	public final void stopSpilling() {
+		Thread stopped;
+		synchronized (this) {
+			stopped = spillThread;
+			if (stopped == null) {
+				return;
+			}
+			spillThread = null;
+		}
+		LockSupport.unpark(stopped);
+		boolean isInterrupted = false;
+		while (stopped.isAlive()) {
+			try {
+				stopped.join();
+			} catch (InterruptedException e) {
+				isInterrupted = true;
+			}
+		}
+		if (isInterrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public final synchronized boolean isSpilling() {
+		return spillThread != null;
+	}
+
+	/**
+	 * The same as writeMotionData(). With the BINARY log format this writes a binary log, not a .csv file.
+	 */
+	public final void writeMotionDataCSV() {
+		writeMotionData();
+	}
+
+	/**
+	 * Writes the ticks that have not been spilled yet to the spill file, at most one batch between writes to the
+	 * channel. Call this holding writeLock.
+	 */
+	private void spill() {
+		long start = spilled.get();
+		if (start == added.get()) {
+			return;
+		}
+		try {
+			if (spillChannel == null) {
+				spillFileName = new SimpleDateFormat("yyyy-MM-dd hh-mm-ss").format(new Date());
+				spillFormat = logFormat;
+				spillChannel = openFile(spillFileName, spillFormat);
+			}
+			long end;
+			while (start < (end = Math.min(added.get(), start + batchSize))) {
+				for (long tick = start; tick < end; tick++) {
+					encodeTick(spillChannel, spillFormat, tick);
+				}
+				writeBuffer(spillChannel);
+				spilled.set(end);
+				start = end;
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			// Skip the ticks that could not be written, so the producer does not start dropping new ones
+			spilled.set(added.get());
+			buffer.clear();
+		}
 	}
 
 	/**
-	 * Call this in autonomousInit() to clear the motionDataList
+	 * Makes a new file with the header already in the buffer. Call this holding writeLock.
 	 */
-	public synchronized final void initialize() {
-		motionDataList.clear();
+	private FileChannel openFile(String fileName, LogFormat format) throws IOException {
+		String extension = (format == LogFormat.BINARY) ? MotionLogFile.EXTENSION : ".csv";
+		FileChannel channel = FileChannel.open(Paths.get(filePath + fileName + extension),
+			StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		buffer.clear();
+		if (format == LogFormat.BINARY) {
+			MotionLogFile.putHeader(buffer, metadata);
+		} else {
+			rowBuilder.setLength(0);
+			appendHeader(rowBuilder);
+			encode(channel, rowBuilder);
+		}
+		return channel;
 	}
 
 	/**
-	 * Call this in disabledInit() to send the motionDataList to a .csv file.
+	 * Puts a tick in the buffer, writing the buffer to the channel first if the tick does not fit
 	 */
-	public synchronized final void writeMotionDataCSV() {
-		if (motionDataList.isEmpty()) {
+	private void encodeTick(FileChannel channel, LogFormat format, long tick) throws IOException {
+		if (format == LogFormat.BINARY) {
+			if (buffer.remaining() < MotionLogFile.RECORD_SIZE) {
+				writeBuffer(channel);
+			}
+			int i = (int) (tick % capacity);
+			MotionLogFile.putRecord(buffer, time[i], actualX[i], actualY[i], actualAngle[i], targetX[i],
+				targetY[i], targetAngle[i], crossTrackError[i], lagError[i], angleError[i], leftPower[i],
+				rightPower[i], pathNumber[i], motionState[i]);
 			return;
 		}
-		String fileName = new SimpleDateFormat("yyyy-MM-dd hh-mm-ss").format(new Date());
-		File file = new File(filePath + fileName + ".csv");
+		if (buffer.remaining() < MAX_ROW_SIZE) {
+			writeBuffer(channel);
+		}
+		putRow(tick);
+	}
+
+	/**
+	 * Copies an ASCII row into the buffer, writing the buffer to the channel first if the row does not fit
+	 *
+	 * @return the position in the buffer where the row starts
+	 */
+	private int encode(FileChannel channel, CharSequence row) throws IOException {
+		if (buffer.remaining() < row.length()) {
+			writeBuffer(channel);
+		}
+		int position = buffer.position();
+		for (int i = 0; i < row.length(); i++) {
+			buffer.put((byte) row.charAt(i));
+		}
+		return position;
+	}
+
+	private void writeBuffer(FileChannel channel) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
 
-		StringBuilder sb = new StringBuilder(204800);
+	private void closeSpillFile() {
+		if (spillChannel != null) {
+			try {
+				spillChannel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			spillChannel = null;
+		}
+	}
+
+	private static void appendHeader(StringBuilder sb) {
 		sb.append("Time");
 		sb.append(", ");
 		sb.append("xActual");
@@ -85,56 +504,399 @@ public class MotionLogger {
 		sb.append(", ");
 		sb.append("motionState");
 		sb.append('\n');
+	}
 
-		for (MotionData data : motionDataList) {
-			sb.append(data.getPowers().getTime());
-			sb.append(", ");
-			sb.append(data.getActualPose().getX());
-			sb.append(", ");
-			sb.append(data.getActualPose().getY());
-			sb.append(", ");
-			sb.append(data.getActualPose().getAngle());
-			sb.append(", ");
-			sb.append(data.getTargetPose().getX());
-			sb.append(", ");
-			sb.append(data.getTargetPose().getY());
-			sb.append(", ");
-			sb.append(data.getTargetPose().getAngle());
-			sb.append(", ");
-			sb.append(data.getError().getXTrack());
-			sb.append(", ");
-			sb.append(data.getError().getLag());
-			sb.append(", ");
-			sb.append(data.getError().getAngle());
-			sb.append(", ");
-			sb.append(data.getPowers().getLeft());
-			sb.append(", ");
-			sb.append(data.getPowers().getRight());
-			sb.append(", ");
-			sb.append(data.getPathNumber());
-			sb.append(", ");
-			sb.append(data.getCurrentMotionState());
-			sb.append('\n');
-		}
-
-		try (BufferedWriter bf = new BufferedWriter(new FileWriter(file), 32768)) {
-			System.out.println("File " + fileName + " has been made!");
-			bf.write(sb.toString());
-//			pw.flush();
-//			pw.close();
-		} catch (FileNotFoundException e) {
-			System.out.println("There is no file at " + file);
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
+	/**
+	 * Puts a tick in the buffer as a CSV row, which must have MAX_ROW_SIZE bytes left
+	 */
+	private void putRow(long tick) {
+		int i = (int) (tick % capacity);
+		putColumn(time[i], MotionLogFile.TIME);
+		putColumn(actualX[i], MotionLogFile.ACTUAL_X);
+		putColumn(actualY[i], MotionLogFile.ACTUAL_Y);
+		putColumn(actualAngle[i], MotionLogFile.ACTUAL_ANGLE);
+		putColumn(targetX[i], MotionLogFile.TARGET_X);
+		putColumn(targetY[i], MotionLogFile.TARGET_Y);
+		putColumn(targetAngle[i], MotionLogFile.TARGET_ANGLE);
+		putColumn(crossTrackError[i], MotionLogFile.CROSS_TRACK_ERROR);
+		putColumn(lagError[i], MotionLogFile.LAG_ERROR);
+		putColumn(angleError[i], MotionLogFile.ANGLE_ERROR);
+		putColumn(leftPower[i], MotionLogFile.LEFT_POWER);
+		putColumn(rightPower[i], MotionLogFile.RIGHT_POWER);
+		DecimalFormatter.putLong(buffer, pathNumber[i]);
+		DecimalFormatter.putAscii(buffer, ", ");
+		DecimalFormatter.putAscii(buffer, (motionState[i] == null) ? "null" : motionState[i].name());
+		buffer.put((byte) '\n');
+	}
+
+	private void putColumn(double value, int column) {
+		DecimalFormatter.putDouble(buffer, value, digits[column]);
+		DecimalFormatter.putAscii(buffer, ", ");
+	}
+
+	public final int getCapacity() {
+		return capacity;
+	}
+
+	public final OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * @return how many ticks were added since the log was initialized, including ones that were overwritten
+	 */
+	public final long getAddedCount() {
+		return added.get();
+	}
+
+	/**
+	 * @return how many ticks were dropped because the spill thread fell behind
+	 */
+	public final long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	public final LogFormat getLogFormat() {
+		return logFormat;
+	}
+
+	/**
+	 * Takes effect the next time a file is made
+	 *
+	 * @param logFormat - the format of the log files, CSV unless changed
+	 */
+	public final void setLogFormat(LogFormat logFormat) {
+		if (logFormat == null) {
+			throw new IllegalArgumentException("logFormat must not be null");
+		}
+		this.logFormat = logFormat;
+	}
+
+	/**
+	 * @param column - one of the decimal columns in MotionLogFile, from TIME to RIGHT_POWER
+	 * @return the number of digits after the decimal point of the column in CSV files
+	 */
+	public final int getDigits(int column) {
+		checkDecimalColumn(column);
+		synchronized (writeLock) {
+			return digits[column];
+		}
+	}
+
+	/**
+	 * Sets how precisely a column is written to CSV files. Binary logs are not affected.
+	 *
+	 * @param column - one of the decimal columns in MotionLogFile, from TIME to RIGHT_POWER
+	 * @param digits - the number of digits after the decimal point, from 0 to DecimalFormatter.MAX_DIGITS
+	 */
+	public final void setDigits(int column, int digits) {
+		checkDecimalColumn(column);
+		if ((digits < 0) || (digits > DecimalFormatter.MAX_DIGITS)) {
+			throw new IllegalArgumentException("digits must be between 0 and " + DecimalFormatter.MAX_DIGITS);
+		}
+		synchronized (writeLock) {
+			this.digits[column] = digits;
+		}
+	}
+
+	private static void checkDecimalColumn(int column) {
+		if ((column < MotionLogFile.TIME) || (column > MotionLogFile.RIGHT_POWER)) {
+			throw new IllegalArgumentException("column must be one of the decimal columns from MotionLogFile.TIME to "
+				+ "MotionLogFile.RIGHT_POWER");
 		}
 	}
 
+	public final CapturePolicy getCapturePolicy() {
+		return capturePolicy;
+	}
+
+	/**
+	 * Sets which ticks are kept. Call this while nothing is adding ticks, for example in robotInit().
+	 *
+	 * @param capturePolicy - the policy, CapturePolicy.EVERY_TICK unless changed
+	 */
+	public final void setCapturePolicy(CapturePolicy capturePolicy) {
+		if (capturePolicy == null) {
+			throw new IllegalArgumentException("capturePolicy must not be null");
+		}
+		boolean hasRing = (capturePolicy.getDecimation() > 1) && (capturePolicy.getPreTriggerTicks() > 0);
+		preTriggerRing = hasRing ? new PreTriggerRing(capturePolicy.getPreTriggerTicks()) : null;
+		this.capturePolicy = capturePolicy;
+		resetCapture();
+	}
+
+	private void resetCapture() {
+		PreTriggerRing preTriggerRing = this.preTriggerRing;
+		if (preTriggerRing != null) {
+			preTriggerRing.clear();
+		}
+		seenCount = 0;
+		postTriggerTicksLeft = 0;
+		hasPreviousTick = false;
+		previousMotionState = null;
+		previousPathNumber = 0;
+		triggerCount.set(0);
+	}
+
+	/**
+	 * @return how many ticks were triggers since the log was initialized
+	 */
+	public final long getTriggerCount() {
+		return triggerCount.get();
+	}
+
+	/**
+	 * @return the crash safe log that ticks are also stored in, or null if there is none
+	 */
+	public final MappedMotionLog getCrashLog() {
+		return crashLog;
+	}
+
+	/**
+	 * Also stores every tick in a memory mapped file as it is added, so the ticks survive if the robot code crashes
+	 * before the log is written. Use MotionLogRecovery to read the file afterwards.
+	 *
+	 * @param crashLog - the log to store ticks in, or null to stop
+	 */
+	public final void setCrashLog(MappedMotionLog crashLog) {
+		this.crashLog = crashLog;
+	}
+
+	/**
+	 * @return a copy of the information about the robot kept with binary logs
+	 */
+	public final Map<String, String> getMetadata() {
+		synchronized (writeLock) {
+			return new LinkedHashMap<>(metadata);
+		}
+	}
+
+	/**
+	 * Keeps information about the robot in the header of binary logs, for example its robot width. Takes effect the
+	 * next time a file is made.
+	 *
+	 * @param key - the name of the information
+	 * @param value - the information
+	 */
+	public final void putMetadata(String key, String value) {
+		if ((key == null) || (value == null)) {
+			throw new IllegalArgumentException("key and value must not be null");
+		}
+		synchronized (writeLock) {
+			metadata.put(key, value);
+		}
+	}
+
+	/**
+	 * @return the time between writes to the spill file in nanoseconds
+	 */
+	public final long getSpillPeriodNanos() {
+		return spillPeriodNanos;
+	}
+
+	/**
+	 * A crash loses at most the ticks of one spill period
+	 *
+	 * @param period - the time between writes to the spill file
+	 * @param unit - the unit of the period
+	 */
+	public final void setSpillPeriod(long period, TimeUnit unit) {
+		long spillPeriodNanos = unit.toNanos(period);
+		if (spillPeriodNanos <= 0) {
+			throw new IllegalArgumentException("period must be greater than 0");
+		}
+		this.spillPeriodNanos = spillPeriodNanos;
+	}
+
+	public final int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @param batchSize - the most ticks to encode between writes to the spill file
+	 */
+	public final void setBatchSize(int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batchSize must be greater than 0");
+		}
+		this.batchSize = batchSize;
+	}
+
 	@Override
 	public String toString() {
 		return "MotionLogger{" +
-			"motionDataList=" + motionDataList +
+			"size=" + size() +
+			", capacity=" + capacity +
+			", overflowPolicy=" + overflowPolicy +
+			", addedCount=" + added.get() +
+			", isSpilling=" + isSpilling() +
+			", spilledCount=" + spilled.get() +
+			", droppedCount=" + droppedCount.get() +
+			", spillPeriodNanos=" + spillPeriodNanos +
+			", batchSize=" + batchSize +
+			", logFormat=" + logFormat +
+			", digits=" + Arrays.toString(digits) +
+			", metadata=" + metadata +
+			", crashLog=" + crashLog +
+			", capturePolicy=" + capturePolicy +
+			", triggerCount=" + triggerCount.get() +
 			", filePath='" + filePath + '\'' +
 			'}';
 	}
+
+	/**
+	 * How the log is written to files
+	 */
+	public enum LogFormat {
+		/**
+		 * A .csv file that can be opened in a spreadsheet, about 300 bytes a tick
+		 */
+		CSV,
+		/**
+		 * A binary log of fixed width records, 57 bytes a tick. Use MotionLogCsvExporter on a computer to turn it into
+		 * a .csv file.
+		 */
+		BINARY
+	}
+
+	/**
+	 * What to do when the log is full
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * Replace the oldest ticks, so the log holds the last capacity ticks. Stop the MotionController before
+		 * writeMotionDataCSV(), since the ring is read while it could still be written.
+		 */
+		OVERWRITE_OLDEST,
+		/**
+		 * Keep every tick by streaming them to a .csv file on a background thread during the run. Ticks are only lost
+		 * if the writer falls a whole capacity behind. The file is finished by writeMotionDataCSV().
+		 */
+		SPILL_TO_DISK
+	}
+
+	/**
+	 * The latest steady state ticks, so the ticks before a trigger can be kept at full rate. A tick that falls out of
+	 * the ring is kept only if it is a decimation tick.
+	 */
+	private final class PreTriggerRing {
+
+		private final double[] time;
+		private final double[] actualX;
+		private final double[] actualY;
+		private final double[] actualAngle;
+		private final double[] targetX;
+		private final double[] targetY;
+		private final double[] targetAngle;
+		private final double[] crossTrackError;
+		private final double[] lagError;
+		private final double[] angleError;
+		private final double[] leftPower;
+		private final double[] rightPower;
+		private final int[] pathNumber;
+		private final MotionState[] motionState;
+		private final boolean[] isDecimationTick;
+		private int start;
+		private int size;
+
+		PreTriggerRing(int capacity) {
+			time = new double[capacity];
+			actualX = new double[capacity];
+			actualY = new double[capacity];
+			actualAngle = new double[capacity];
+			targetX = new double[capacity];
+			targetY = new double[capacity];
+			targetAngle = new double[capacity];
+			crossTrackError = new double[capacity];
+			lagError = new double[capacity];
+			angleError = new double[capacity];
+			leftPower = new double[capacity];
+			rightPower = new double[capacity];
+			pathNumber = new int[capacity];
+			motionState = new MotionState[capacity];
+			isDecimationTick = new boolean[capacity];
+		}
+
+		void add(double time, double actualX, double actualY, double actualAngle, double targetX, double targetY,
+			double targetAngle, double crossTrackError, double lagError, double angleError, double leftPower,
+			double rightPower, int pathNumber, MotionState motionState, boolean isDecimationTick) {
+			if (size == this.time.length) {
+				if (this.isDecimationTick[start]) {
+					store(start);
+				}
+				start = (start + 1) % this.time.length;
+				size--;
+			}
+			int i = (start + size) % this.time.length;
+			this.time[i] = time;
+			this.actualX[i] = actualX;
+			this.actualY[i] = actualY;
+			this.actualAngle[i] = actualAngle;
+			this.targetX[i] = targetX;
+			this.targetY[i] = targetY;
+			this.targetAngle[i] = targetAngle;
+			this.crossTrackError[i] = crossTrackError;
+			this.lagError[i] = lagError;
+			this.angleError[i] = angleError;
+			this.leftPower[i] = leftPower;
+			this.rightPower[i] = rightPower;
+			this.pathNumber[i] = pathNumber;
+			this.motionState[i] = motionState;
+			this.isDecimationTick[i] = isDecimationTick;
+			size++;
+		}
+
+		/**
+		 * Empties the ring into the log, oldest first
+		 *
+		 * @param isAll - if every tick is kept, or only the decimation ticks
+		 */
+		void flush(boolean isAll) {
+			for (int k = 0; k < size; k++) {
+				int i = (start + k) % time.length;
+				if (isAll || isDecimationTick[i]) {
+					store(i);
+				}
+			}
+			clear();
+		}
+
+		void clear() {
+			start = 0;
+			size = 0;
+		}
+
+		private void store(int i) {
+			MotionLogger.this.store(time[i], actualX[i], actualY[i], actualAngle[i], targetX[i], targetY[i],
+				targetAngle[i], crossTrackError[i], lagError[i], angleError[i], leftPower[i], rightPower[i],
+				pathNumber[i], motionState[i]);
+		}
+	}
+
+	/**
+	 * Writes new ticks to the spill file every spill period until spilling is stopped
+	 */
+	private final class Spiller implements Runnable {
+
+		@Override
+		public void run() {
+			while (isCurrentSpiller()) {
+				LockSupport.parkNanos(this, spillPeriodNanos);
+				if (spilled.get() != added.get()) {
+					synchronized (writeLock) {
+						spill();
+					}
+				}
+			}
+			synchronized (writeLock) {
+				spill();
+			}
+		}
+
+		private boolean isCurrentSpiller() {
+			synchronized (MotionLogger.this) {
+				return spillThread == Thread.currentThread();
+			}
+		}
+	}
 }
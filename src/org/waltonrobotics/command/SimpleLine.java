@@ -1,14 +1,14 @@
 package org.waltonrobotics.command;
 
 import org.waltonrobotics.controller.Pose;
-import org.waltonrobotics.motion.Line;
+import org.waltonrobotics.motion.TrajectoryCache;
 
 public class SimpleLine extends SimpleMotion {
 
 	public SimpleLine(double maxVelocity, double maxAcceleration, double startVelocity, double endVelocity,
 		boolean isBackwards, Pose startPosition, Pose endPosition) {
-		super(new Line(maxVelocity, maxAcceleration, startVelocity, endVelocity, isBackwards, startPosition,
-			endPosition));
+		super(TrajectoryCache.getInstance().getLine(getDrivetrain().getKinematics(), maxVelocity, maxAcceleration,
+			startVelocity, endVelocity, isBackwards, startPosition, endPosition));
 	}
 
 	public static SimpleLine lineWithDistance(Pose startPosition, double distance) {
@@ -2,6 +2,7 @@ package org.waltonrobotics.command;
 
 import edu.wpi.first.wpilibj.command.Command;
 import org.waltonrobotics.AbstractDrivetrain;
+import org.waltonrobotics.controller.MotionEvent;
 import org.waltonrobotics.controller.Path;
 
 public class SimpleMotion extends Command {
@@ -40,7 +41,7 @@ public class SimpleMotion extends Command {
 	}
 
 	protected void end() {
-		System.out.println("turn done");
+		drivetrain.getMotionController().recordEvent(MotionEvent.COMMAND_ENDED);
 		drivetrain.setSpeeds(0, 0);
 	}
 }
@@ -2,7 +2,7 @@ package org.waltonrobotics.command;
 
 import java.util.Arrays;
 import org.waltonrobotics.controller.Pose;
-import org.waltonrobotics.motion.Spline;
+import org.waltonrobotics.motion.TrajectoryCache;
 
 /**
  *
@@ -17,7 +17,8 @@ public class SimpleSpline extends SimpleMotion {
 	public SimpleSpline(double maxVelocity, double maxAcceleration, double startAngle,
 		double endAngle, boolean isBackwards, double startScale, double endScale, double startVelocity,
 		double endVelocity, Pose... knots) {
-		super(new Spline(
+		super(TrajectoryCache.getInstance().getSpline(
+			getDrivetrain().getKinematics(),
 			maxVelocity,
 			maxAcceleration,
 			startVelocity,
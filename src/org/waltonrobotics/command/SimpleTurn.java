@@ -1,13 +1,14 @@
 package org.waltonrobotics.command;
 
 import org.waltonrobotics.controller.Pose;
-import org.waltonrobotics.motion.PointTurn;
+import org.waltonrobotics.motion.TrajectoryCache;
 
 public class SimpleTurn extends SimpleMotion {
 
 	public SimpleTurn(double maxVelocity, double maxAcceleration, Pose startPosition,
 		double endAngle) {
-		super(new PointTurn(
+		super(TrajectoryCache.getInstance().getPointTurn(
+			getDrivetrain().getKinematics(),
 			maxVelocity,
 			maxAcceleration,
 			startPosition,
@@ -0,0 +1,277 @@
+package org.waltonrobotics.controller;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a control loop on its own thread at a fixed rate. Every tick has a deadline on System.nanoTime that is a whole
+ * number of periods after the start, so the time a tick takes never pushes the later ticks back. A tick that finishes
+ * after the next deadline is an overrun, and the OverrunPolicy decides what happens to the deadlines it missed.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public class ControlLoopExecutor {
+
+	/**
+	 * The period unless changed, 5 milliseconds
+	 */
+	public static final long DEFAULT_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+	private final String name;
+	private volatile long periodNanos = DEFAULT_PERIOD_NANOS;
+	private volatile OverrunPolicy overrunPolicy = OverrunPolicy.SKIP;
+	private int threadPriority = Thread.MAX_PRIORITY;
+	private Runnable threadInitializer;
+	private Loop loop;
+
+	private volatile long tickCount;
+	private volatile long overrunCount;
+	private volatile long skippedTickCount;
+	private volatile long maxLatenessNanos;
+
+	/**
+	 * @param name - the name of the loop thread
+	 */
+	public ControlLoopExecutor(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Starts running a task every period on a new thread. The first tick runs right away.
+	 *
+	 * @param task - the tick to run
+	 */
+	public final synchronized void start(Runnable task) {
+		if (loop != null) {
+			throw new IllegalStateException(name + " is already running");
+		}
+		loop = new Loop(task, threadInitializer);
+		Thread thread = new Thread(loop, name);
+		thread.setDaemon(true);
+		thread.setPriority(threadPriority);
+		loop.thread = thread;
+		thread.start();
+	}
+
+	/**
+	 * Stops the loop. A tick that is already running is allowed to finish, and unless this is called from the loop
+	 * thread it waits for that, so no tick is running once this returns.
+	 */
+	public final void stop() {
+		Loop stopped;
+		synchronized (this) {
+			stopped = loop;
+			if (stopped == null) {
+				return;
+			}
+			stopped.isRunning = false;
+			LockSupport.unpark(stopped.thread);
+			loop = null;
+		}
+
+		if (Thread.currentThread() != stopped.thread) {
+			boolean isInterrupted = false;
+			while (stopped.thread.isAlive()) {
+				try {
+					stopped.thread.join();
+				} catch (InterruptedException e) {
+					isInterrupted = true;
+				}
+			}
+			if (isInterrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @return if the loop is running
+	 */
+	public final synchronized boolean isRunning() {
+		return loop != null;
+	}
+
+	/**
+	 * @return the time between ticks in nanoseconds
+	 */
+	public final long getPeriodNanos() {
+		return periodNanos;
+	}
+
+	/**
+	 * Takes effect from the next deadline if the loop is running
+	 *
+	 * @param period - the time between ticks
+	 * @param unit - the unit of the period
+	 */
+	public final void setPeriod(long period, TimeUnit unit) {
+		long periodNanos = unit.toNanos(period);
+		if (periodNanos <= 0) {
+			throw new IllegalArgumentException("period must be greater than 0");
+		}
+		this.periodNanos = periodNanos;
+	}
+
+	public final OverrunPolicy getOverrunPolicy() {
+		return overrunPolicy;
+	}
+
+	/**
+	 * @param overrunPolicy - what to do with the deadlines missed by an overrun
+	 */
+	public final void setOverrunPolicy(OverrunPolicy overrunPolicy) {
+		if (overrunPolicy == null) {
+			throw new IllegalArgumentException("overrunPolicy must not be null");
+		}
+		this.overrunPolicy = overrunPolicy;
+	}
+
+	public final synchronized int getThreadPriority() {
+		return threadPriority;
+	}
+
+	/**
+	 * Takes effect the next time the loop is started
+	 *
+	 * @param threadPriority - the Java priority of the loop thread, Thread.MAX_PRIORITY unless changed
+	 */
+	public final synchronized void setThreadPriority(int threadPriority) {
+		if ((threadPriority < Thread.MIN_PRIORITY) || (threadPriority > Thread.MAX_PRIORITY)) {
+			throw new IllegalArgumentException("threadPriority must be between Thread.MIN_PRIORITY and "
+				+ "Thread.MAX_PRIORITY");
+		}
+		this.threadPriority = threadPriority;
+	}
+
+	/**
+	 * Sets code to run on the loop thread before its first tick, for example to pin the thread to a core or give it a
+	 * real time priority through a native library. Takes effect the next time the loop is started.
+	 *
+	 * @param threadInitializer - the code to run, or null for none
+	 */
+	public final synchronized void setThreadInitializer(Runnable threadInitializer) {
+		this.threadInitializer = threadInitializer;
+	}
+
+	/**
+	 * @return how many ticks have run since the counters were reset
+	 */
+	public final long getTickCount() {
+		return tickCount;
+	}
+
+	/**
+	 * @return how many ticks finished after the next deadline since the counters were reset
+	 */
+	public final long getOverrunCount() {
+		return overrunCount;
+	}
+
+	/**
+	 * @return how many deadlines were dropped by the SKIP policy since the counters were reset
+	 */
+	public final long getSkippedTickCount() {
+		return skippedTickCount;
+	}
+
+	/**
+	 * @return the latest a tick has started after its deadline since the counters were reset, in nanoseconds
+	 */
+	public final long getMaxLatenessNanos() {
+		return maxLatenessNanos;
+	}
+
+	/**
+	 * Sets the tick, overrun and skipped tick counts and the max lateness back to 0. Do this while the loop is stopped.
+	 */
+	public final void resetCounters() {
+		tickCount = 0;
+		overrunCount = 0;
+		skippedTickCount = 0;
+		maxLatenessNanos = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "ControlLoopExecutor{" +
+			"name='" + name + '\'' +
+			", periodNanos=" + periodNanos +
+			", overrunPolicy=" + overrunPolicy +
+			", threadPriority=" + threadPriority +
+			", isRunning=" + isRunning() +
+			", tickCount=" + tickCount +
+			", overrunCount=" + overrunCount +
+			", skippedTickCount=" + skippedTickCount +
+			", maxLatenessNanos=" + maxLatenessNanos +
+			'}';
+	}
+
+	/**
+	 * What to do with the deadlines that passed while a tick overran
+	 */
+	public enum OverrunPolicy {
+		/**
+		 * Drop the missed deadlines and wait for the next one that is still ahead. The loop stays on its original time
+		 * grid but runs fewer ticks.
+		 */
+		SKIP,
+		/**
+		 * Run a tick for every missed deadline back to back until the loop is on time again
+		 */
+		CATCH_UP
+	}
+
+	/**
+	 * One run of the loop thread. Each start makes a new one so a stopped thread can never run another tick.
+	 */
+	private final class Loop implements Runnable {
+
+		private final Runnable task;
+		private final Runnable threadInitializer;
+		private volatile boolean isRunning = true;
+		private Thread thread;
+
+		Loop(Runnable task, Runnable threadInitializer) {
+			this.task = task;
+			this.threadInitializer = threadInitializer;
+		}
+
+		@Override
+		public void run() {
+			if (threadInitializer != null) {
+				threadInitializer.run();
+			}
+
+			long deadline = System.nanoTime();
+			while (isRunning) {
+				long wait = deadline - System.nanoTime();
+				if (wait > 0) {
+					LockSupport.parkNanos(this, wait);
+					// Wake ups can be early or spurious, so check the time again
+					continue;
+				}
+				maxLatenessNanos = Math.max(maxLatenessNanos, -wait);
+
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					// Keep the loop alive, one bad tick should not stop the robot
+					e.printStackTrace();
+				}
+				tickCount++;
+
+				long period = periodNanos;
+				deadline += period;
+				long lateness = System.nanoTime() - deadline;
+				if (lateness > 0) {
+					overrunCount++;
+					if (overrunPolicy == OverrunPolicy.SKIP) {
+						long missed = (lateness / period) + 1;
+						deadline += missed * period;
+						skippedTickCount += missed;
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package org.waltonrobotics.controller;
+
+/**
+ * The settings paths are generated and followed with: the width of the robot, the number of steps a path is divided
+ * into, if paths are streamed and if curves are sampled evenly in distance. It never changes, so paths for different
+ * robots can be generated at the same time and on any thread. Each MotionController has one, and a path keeps the one
+ * it was made with.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public final class DriveKinematics {
+
+	private final double robotWidth;
+	private final int pathNumberOfSteps;
+	private final boolean isStreamingGeneration;
+	private final boolean isArcLengthParameterized;
+
+	/**
+	 * @param robotWidth - the width of the robot from the outside of each wheel
+	 * @param pathNumberOfSteps - the number of steps a path is divided into
+	 * @param isStreamingGeneration - if paths generate their samples as the MotionController needs them instead of
+	 * when they are constructed
+	 * @param isArcLengthParameterized - if curves place their samples evenly in distance instead of evenly in t
+	 */
+	public DriveKinematics(double robotWidth, int pathNumberOfSteps, boolean isStreamingGeneration,
+		boolean isArcLengthParameterized) {
+		if (pathNumberOfSteps < 1) {
+			throw new IllegalArgumentException("pathNumberOfSteps must be at least 1");
+		}
+		this.robotWidth = robotWidth;
+		this.pathNumberOfSteps = pathNumberOfSteps;
+		this.isStreamingGeneration = isStreamingGeneration;
+		this.isArcLengthParameterized = isArcLengthParameterized;
+	}
+
+	/**
+	 * Uses the default arc length setting from Path
+	 *
+	 * @param robotWidth - the width of the robot from the outside of each wheel
+	 * @param pathNumberOfSteps - the number of steps a path is divided into
+	 * @param isStreamingGeneration - if paths generate their samples as the MotionController needs them instead of
+	 * when they are constructed
+	 */
+	@SuppressWarnings("deprecation")
+	public DriveKinematics(double robotWidth, int pathNumberOfSteps, boolean isStreamingGeneration) {
+		this(robotWidth, pathNumberOfSteps, isStreamingGeneration, Path.isArcLengthParameterized());
+	}
+
+	/**
+	 * Uses the default number of steps, streaming and arc length settings from Path
+	 *
+	 * @param robotWidth - the width of the robot from the outside of each wheel
+	 */
+	@SuppressWarnings("deprecation")
+	public DriveKinematics(double robotWidth) {
+		this(robotWidth, Path.getPathNumberOfSteps(), Path.isStreamingGeneration(), Path.isArcLengthParameterized());
+	}
+
+	/**
+	 * Paths that are made without DriveKinematics use this
+	 *
+	 * @return the settings in the deprecated static defaults of Path as they are now
+	 */
+	@SuppressWarnings("deprecation")
+	public static DriveKinematics getDefault() {
+		return new DriveKinematics(Path.getRobotWidth(), Path.getPathNumberOfSteps(), Path.isStreamingGeneration(),
+			Path.isArcLengthParameterized());
+	}
+
+	/**
+	 * @return The width of the robot from the outside of each wheel
+	 */
+	public double getRobotWidth() {
+		return robotWidth;
+	}
+
+	/**
+	 * @return the number of steps a path is divided into
+	 */
+	public int getPathNumberOfSteps() {
+		return pathNumberOfSteps;
+	}
+
+	/**
+	 * @return if paths generate their samples as the MotionController needs them
+	 */
+	public boolean isStreamingGeneration() {
+		return isStreamingGeneration;
+	}
+
+	/**
+	 * Evenly spaced samples track tight curves as well as uniform t does with many more steps, so fewer steps can be
+	 * used when this is on.
+	 *
+	 * @return if curves place their samples evenly in distance instead of evenly in t
+	 */
+	public boolean isArcLengthParameterized() {
+		return isArcLengthParameterized;
+	}
+
+	/**
+	 * @return a copy with a different robot width
+	 */
+	public DriveKinematics withRobotWidth(double robotWidth) {
+		return new DriveKinematics(robotWidth, pathNumberOfSteps, isStreamingGeneration, isArcLengthParameterized);
+	}
+
+	/**
+	 * @return a copy with a different number of steps
+	 */
+	public DriveKinematics withPathNumberOfSteps(int pathNumberOfSteps) {
+		return new DriveKinematics(robotWidth, pathNumberOfSteps, isStreamingGeneration, isArcLengthParameterized);
+	}
+
+	/**
+	 * @return a copy with streaming generation on or off
+	 */
+	public DriveKinematics withStreamingGeneration(boolean isStreamingGeneration) {
+		return new DriveKinematics(robotWidth, pathNumberOfSteps, isStreamingGeneration, isArcLengthParameterized);
+	}
+
+	/**
+	 * @return a copy with arc length parameterization on or off
+	 */
+	public DriveKinematics withArcLengthParameterized(boolean isArcLengthParameterized) {
+		return new DriveKinematics(robotWidth, pathNumberOfSteps, isStreamingGeneration, isArcLengthParameterized);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof DriveKinematics)) {
+			return false;
+		}
+		DriveKinematics that = (DriveKinematics) o;
+		return (Double.compare(that.robotWidth, robotWidth) == 0) && (pathNumberOfSteps == that.pathNumberOfSteps)
+			&& (isStreamingGeneration == that.isStreamingGeneration)
+			&& (isArcLengthParameterized == that.isArcLengthParameterized);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = Double.hashCode(robotWidth);
+		result = (31 * result) + pathNumberOfSteps;
+		result = (31 * result) + (isStreamingGeneration ? 1 : 0);
+		result = (31 * result) + (isArcLengthParameterized ? 1 : 0);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "DriveKinematics{" +
+			"robotWidth=" + robotWidth +
+			", pathNumberOfSteps=" + pathNumberOfSteps +
+			", isStreamingGeneration=" + isStreamingGeneration +
+			", isArcLengthParameterized=" + isArcLengthParameterized +
+			'}';
+	}
+}
@@ -0,0 +1,158 @@
+package org.waltonrobotics.controller;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations in nanoseconds with fixed buckets, so recording never allocates. Each power of two is split
+ * into 128 buckets, which keeps every reported value within 1% of the real one from 1 nanosecond up to about 18
+ * minutes. One thread records while any thread reads. Readers see a consistent enough picture for monitoring, but not
+ * an atomic one.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 40;
+	private static final int BUCKET_COUNT = ((MAX_EXPONENT - SUB_BUCKET_BITS) + 2) * SUB_BUCKET_COUNT;
+
+	private final String name;
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private volatile long count;
+	private volatile long max;
+
+	/**
+	 * @param name - what is being measured, used by toString
+	 */
+	public LatencyHistogram(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Adds a duration. Only one thread may record.
+	 *
+	 * @param nanos - the duration in nanoseconds. Negative durations count as 0.
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		int index = getIndex(nanos);
+		counts.lazySet(index, counts.get(index) + 1);
+		if (nanos > max) {
+			max = nanos;
+		}
+		count++;
+	}
+
+	private static int getIndex(long nanos) {
+		if (nanos < SUB_BUCKET_COUNT) {
+			return (int) nanos;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		if (exponent > MAX_EXPONENT) {
+			return BUCKET_COUNT - 1;
+		}
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int) (nanos >>> shift) & (SUB_BUCKET_COUNT - 1);
+		return ((shift + 1) * SUB_BUCKET_COUNT) + subBucket;
+	}
+
+	/**
+	 * @return the largest duration that lands in a bucket
+	 */
+	private static long getHighestValue(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int shift = (index / SUB_BUCKET_COUNT) - 1;
+		long subBucket = (index % SUB_BUCKET_COUNT) + SUB_BUCKET_COUNT;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	/**
+	 * @return how many durations have been recorded
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the longest duration recorded in nanoseconds, or 0 if there are none
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * @param percentile - between 0 and 100
+	 * @return the duration in nanoseconds that the given percent of durations are at or below, or 0 if there are none
+	 */
+	public long getPercentile(double percentile) {
+		if ((percentile < 0) || (percentile > 100)) {
+			throw new IllegalArgumentException("percentile must be between 0 and 100");
+		}
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			total += counts.get(i);
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil((percentile / 100.0) * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(getHighestValue(i), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @return the median duration in nanoseconds
+	 */
+	public long getP50() {
+		return getPercentile(50);
+	}
+
+	/**
+	 * @return the 99th percentile duration in nanoseconds
+	 */
+	public long getP99() {
+		return getPercentile(99);
+	}
+
+	/**
+	 * Clears the histogram. Do this while nothing is recording, for example between autonomous runs.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts.set(i, 0);
+		}
+		max = 0;
+		count = 0;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyHistogram{" +
+			"name='" + name + '\'' +
+			", count=" + count +
+			", p50=" + toMicros(getP50()) + "us" +
+			", p99=" + toMicros(getP99()) + "us" +
+			", max=" + toMicros(max) + "us" +
+			'}';
+	}
+
+	private static double toMicros(long nanos) {
+		return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+	}
+}
@@ -1,73 +1,137 @@
 package org.waltonrobotics.controller;
 
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Deque;
-import java.util.ListIterator;
 import java.util.Queue;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import org.waltonrobotics.AbstractDrivetrain;
 import org.waltonrobotics.MotionLogger;
+import org.waltonrobotics.log.MotionLogFile;
 
 /**
  * Controls Path motions
+ * <br>
+ * The thread that runs the ticks, the control loop or whoever calls step(), is the only one that changes the state of
+ * the motion. Paths are handed to it through a lock-free queue, and it publishes a MotionSnapshot whenever the path or
+ * the state changes, along with the time of every tick. Other threads only read what is published, so they never wait
+ * on a tick and a tick never waits on them.
+ * <br>
+ * Odometry and logging can each run on their own loop at their own rate, for example odometry every millisecond,
+ * feedback every 5 and logging every 20. A loop runs on its own thread when its period differs from the period of the
+ * control loop when the scheduler is enabled, otherwise it runs inside the control loop tick. The odometry thread then
+ * owns the actual position and hands every update to the control thread through a seqlock, and the control thread
+ * hands every tick to the logging thread the same way, so each reads consistent values without locking.
  *
  * @author Russell Newton, Walton Robotics
  */
 public class MotionController {
 
+	private static final MotionState[] MOTION_STATES = MotionState.values();
+
 	private final AbstractDrivetrain drivetrain;
-	private final double kV;
-	private final double kK;
-	private final double kAcc;
-	private final double kS;
-	private final double kL;
-	private final double kAng;
-	private final Queue<Path> paths = new LinkedBlockingDeque<>();
-	private final int period;
+	private final DriveKinematics kinematics;
+	// The gains are read from the drivetrain each time the motion starts, after the drivetrain is built
+	private double kV;
+	private double kK;
+	private double kAcc;
+	private double kS;
+	private double kL;
+	private double kAng;
+	private final Queue<Path> paths = new ConcurrentLinkedQueue<>();
 	private final MotionLogger motionLogger;
-	private final double iAng;
-	private final double iLag;
-	private final Timer controller;
-	private boolean running;
+	private double iAng;
+	private double iLag;
+
+	private final ControlLoopExecutor controlLoop;
+	private final ControlLoopExecutor odometryLoop;
+	private final ControlLoopExecutor loggingLoop;
+	private boolean isOdometrySeparate;
+	private boolean isLoggingSeparate;
+	private final MotionEventLog eventLog = new MotionEventLog();
+	private volatile boolean running;
 	private Path currentPath;
-	private PathData staticPathData;
-	private Pose actualPosition;
-	private PathData targetPathData;
-	private RobotPair previousLengths;
+	// The tick works on this scratch state instead of new objects so that it does not allocate
+	private final double[] wheelPositions = new double[RobotPair.SIZE];
+	// The odometry state, owned by the odometry thread when it is separate
+	private final double[] odometryPose = new double[PoseHistory.SIZE];
+	private final PoseHistory poseHistory;
+	private final double[] submittedCorrection = new double[PoseHistory.SIZE];
+	private final SeqlockArray correctionHandoff = new SeqlockArray(PoseHistory.SIZE);
+	private final double[] pendingCorrection = new double[PoseHistory.SIZE];
+	private long appliedCorrectionVersion;
+	private final SeqlockArray poseHandoff = new SeqlockArray(PoseHistory.SIZE);
+	// The pose the feedback of the current tick uses
+	private final double[] feedbackPose = new double[PoseHistory.SIZE];
+	private final double[] logRecord = new double[MotionLogFile.COLUMN_COUNT];
+	private final SeqlockArray logHandoff = new SeqlockArray(MotionLogFile.COLUMN_COUNT);
+	private final double[] loggedRecord = new double[MotionLogFile.COLUMN_COUNT];
+	private long loggedVersion;
+	private final double[] staticPathData = new double[Trajectory.SAMPLE_SIZE];
+	private boolean isStaticBackwards;
+	private final double[] targetPathData = new double[Trajectory.SAMPLE_SIZE];
+	private boolean isTargetBackwards;
 	private double pathStartTime;
-	private ListIterator<PathData> pdIterator;
-	private PathData pdPrevious;
-	private PathData pdNext;
-	private ErrorVector errorVector;
-	private RobotPair powers;
-	private TimerTask currentTimerTask;
+	private Trajectory currentTrajectory;
+	private double lagError;
+	private double crossTrackError;
+	private double angleError;
+	private double tickTime;
+	private double leftPower;
+	private double rightPower;
 	private MotionState currentMotionState = MotionState.WAITING;
 	private double integratedLagError;
 	private double integratedAngleError;
 	private int pathNumber;
+	private double generationLookahead = 1.5;
+	private final PathPrefetcher prefetcher = new PathPrefetcher("MotionController prefetch");
+	private double prefetchLookahead = 2;
+	private Path prefetchedPath;
+	private volatile MotionSnapshot snapshot = new MotionSnapshot(false, null, 0, MotionState.WAITING, 0);
+	private volatile double publishedTickTime;
+	private final LatencyHistogram computeTimeHistogram = new LatencyHistogram("compute time");
+	private final LatencyHistogram periodHistogram = new LatencyHistogram("period");
+	private final LatencyHistogram sensorReadHistogram = new LatencyHistogram("sensor read");
+	private long previousTickStart;
 
 	/**
 	 * @param drivetrain - the drivetrain to use the AbstractDrivetrain methods from
-	 * @param robotWidth - the robot width from the outside of the wheels
+	 * @param kinematics - the robot width and generation settings of this robot
 	 * @param motionLogger - the MotionLogger from the AbstractDrivetrain
 	 */
-	public MotionController(AbstractDrivetrain drivetrain, double robotWidth,
+	@SuppressWarnings("deprecation")
+	public MotionController(AbstractDrivetrain drivetrain, DriveKinematics kinematics,
 		MotionLogger motionLogger) {
+		if (kinematics == null) {
+			throw new IllegalArgumentException("kinematics must not be null");
+		}
 		running = false;
-		Path.setRobotWidth(robotWidth);
+		this.kinematics = kinematics;
+		// Paths made without DriveKinematics use the default width, so give it one if nothing has yet
+		if (Path.getRobotWidth() == 0) {
+			Path.setRobotWidth(kinematics.getRobotWidth());
+		}
+		poseHistory = new PoseHistory(kinematics.getRobotWidth());
 
 		this.motionLogger = motionLogger;
 
-		controller = new Timer();
-		period = 5;
+		controlLoop = new ControlLoopExecutor("MotionController");
+		odometryLoop = new ControlLoopExecutor("MotionController odometry");
+		loggingLoop = new ControlLoopExecutor("MotionController logging");
+		loggingLoop.setThreadPriority(Thread.NORM_PRIORITY);
 
 		RobotPair wheelPositions = drivetrain.getWheelPositions();
-		staticPathData = new PathData(new State(wheelPositions.getLeft(), 0, 0),
-			new State(wheelPositions.getRight(), 0, 0), new Pose(0, 0, 0), 0, true);
+		setStaticPathData(wheelPositions.getLeft(), wheelPositions.getRight(), 0, 0, 0, 0, true);
 
 		this.drivetrain = drivetrain;
+
+		pathNumber = 0;
+	}
+
+	/**
+	 * Reads the gains from the drivetrain. This is not done in the constructor, which runs while the AbstractDrivetrain
+	 * is being constructed, before the fields of its subclass are set.
+	 */
+	private void readGains() {
 		kV = drivetrain.getKV();
 		kK = drivetrain.getKK();
 		kAcc = drivetrain.getKAcc();
@@ -76,8 +140,33 @@ public class MotionController {
 		kAng = drivetrain.getKAng();
 		iLag = drivetrain.getILag();
 		iAng = drivetrain.getIAng();
+		putLogMetadata();
+	}
 
-		pathNumber = 0;
+	/**
+	 * Keeps the settings of this controller in the header of binary logs, so a log can be read without the robot code
+	 */
+	private void putLogMetadata() {
+		motionLogger.putMetadata("robotWidth", Double.toString(kinematics.getRobotWidth()));
+		motionLogger.putMetadata("pathNumberOfSteps", Integer.toString(kinematics.getPathNumberOfSteps()));
+		motionLogger.putMetadata("kV", Double.toString(kV));
+		motionLogger.putMetadata("kK", Double.toString(kK));
+		motionLogger.putMetadata("kAcc", Double.toString(kAcc));
+		motionLogger.putMetadata("kS", Double.toString(kS));
+		motionLogger.putMetadata("kL", Double.toString(kL));
+		motionLogger.putMetadata("kAng", Double.toString(kAng));
+		motionLogger.putMetadata("iLag", Double.toString(iLag));
+		motionLogger.putMetadata("iAng", Double.toString(iAng));
+	}
+
+	/**
+	 * @param drivetrain - the drivetrain to use the AbstractDrivetrain methods from
+	 * @param robotWidth - the robot width from the outside of the wheels
+	 * @param motionLogger - the MotionLogger from the AbstractDrivetrain
+	 */
+	public MotionController(AbstractDrivetrain drivetrain, double robotWidth,
+		MotionLogger motionLogger) {
+		this(drivetrain, new DriveKinematics(robotWidth), motionLogger);
 	}
 
 	/**
@@ -95,6 +184,16 @@ public class MotionController {
 		this(drivetrain, drivetrain.getRobotWidth(), drivetrain.getMotionLogger());
 	}
 
+	/**
+	 * Make the paths for this controller with these, so they match its robot width. Paths made without DriveKinematics
+	 * use the deprecated defaults in Path instead.
+	 *
+	 * @return the robot width and generation settings of this controller
+	 */
+	public final DriveKinematics getKinematics() {
+		return kinematics;
+	}
+
 	/**
 	 * Adds a path to the path queue
 	 *
@@ -105,49 +204,104 @@ public class MotionController {
 	}
 
 	/**
-	 * Calculates the powers to send to the wheels
+	 * Updates the actual position, then calculates the powers to send to the wheels from it and leaves them in
+	 * leftPower and rightPower
+	 */
+	void calculateSpeeds(double leftLength, double rightLength, double time) {
+		updateOdometry(leftLength, rightLength, time);
+		System.arraycopy(odometryPose, 0, feedbackPose, 0, PoseHistory.SIZE);
+		calculatePowers();
+	}
+
+	/**
+	 * Integrates the wheel positions into the actual position in odometryPose, adds it to the pose history and applies
+	 * the latest pose correction if there is a new one
+	 */
+	private void updateOdometry(double leftLength, double rightLength, double time) {
+		if (running) {
+			PoseHistory.integrate(odometryPose, leftLength, rightLength, kinematics.getRobotWidth());
+		}
+		odometryPose[PoseHistory.TIME] = time;
+		poseHistory.add(odometryPose);
+
+		if (correctionHandoff.getVersion() != appliedCorrectionVersion) {
+			appliedCorrectionVersion = correctionHandoff.read(pendingCorrection);
+			if (poseHistory.correct(pendingCorrection[PoseHistory.TIME], pendingCorrection[PoseHistory.X],
+				pendingCorrection[PoseHistory.Y], pendingCorrection[PoseHistory.ANGLE])) {
+				poseHistory.getNewestSample(odometryPose);
+			}
+		}
+	}
+
+	/**
+	 * Corrects where the robot was at a time, for example from a vision target that was seen some time ago. The
+	 * odometry thread applies it on its next update by moving every later pose in the pose history along the same wheel
+	 * arcs from the corrected pose. Only the latest correction submitted before that update is applied, and one that is
+	 * older than the pose history is ignored. Any thread may call this, and it never waits on a tick.
+	 *
+	 * @param pose - where the robot was
+	 * @param time - when the robot was there, in the time of the wheel positions
+	 */
+	public final void correctPose(Pose pose, double time) {
+		synchronized (submittedCorrection) {
+			submittedCorrection[PoseHistory.TIME] = time;
+			submittedCorrection[PoseHistory.X] = pose.getX();
+			submittedCorrection[PoseHistory.Y] = pose.getY();
+			submittedCorrection[PoseHistory.ANGLE] = pose.getAngle();
+			correctionHandoff.write(submittedCorrection);
+		}
+	}
+
+	/**
+	 * Use PoseHistory.getSample to find where the robot was at a time, for example when a camera frame was taken.
 	 *
-	 * @return a RobotPair with the powers and the time
+	 * @return the poses the odometry calculated recently
+	 */
+	public final PoseHistory getPoseHistory() {
+		return poseHistory;
+	}
+
+	/**
+	 * Calculates the powers to send to the wheels from feedbackPose and leaves them in leftPower and rightPower
 	 */
-	private synchronized RobotPair calculateSpeeds(RobotPair wheelPositions) {
+	private void calculatePowers() {
+		double leftLength = feedbackPose[PoseHistory.LEFT_LENGTH];
+		double rightLength = feedbackPose[PoseHistory.RIGHT_LENGTH];
+		double time = feedbackPose[PoseHistory.TIME];
+		tickTime = time;
 		if (running) {
-			double leftPower = 0;
-			double rightPower = 0;
+			double leftFeedForward = 0;
+			double rightFeedForward = 0;
 
 			if (currentPath != null) {
-				targetPathData = interpolate(wheelPositions);
+				interpolate(time);
 
 				if (currentPath.isFinished()) {
-					System.out.println("Current path is finished");
-					Deque<PathData> temp = currentPath.getPathData();
+					recordEvent(MotionEvent.PATH_FINISHED, time);
+					Trajectory temp = currentTrajectory;
 					currentPath = paths.poll();
 
 					integratedLagError = 0;
 					integratedAngleError = 0;
 
 					if (currentPath != null) {
-						System.out.println("Getting new path");
-						double time = temp.getLast().getTime() - temp.getFirst().getTime();
+						double pathTime = temp.getEndTime() - temp.getStartTime();
 
 						//Used to allow smooth transition between motions not making assumption that it finishes perfectly on time
-						pathStartTime = time + pathStartTime;
+						pathStartTime = pathTime + pathStartTime;
 
-						pdIterator = currentPath.getPathData().listIterator();
-						pdPrevious = targetPathData = pdIterator.next();
-						pdNext = pdIterator.next();
+						currentTrajectory = currentPath.getTrajectory();
 
-						targetPathData = interpolate(wheelPositions);
+						interpolate(time);
 						currentMotionState = MotionState.MOVING;
 						pathNumber += 1;
+						recordEvent(MotionEvent.PATH_STARTED, time);
 					} else {
-						System.out.println("Done with motions! :)");
-
-						staticPathData = new PathData(new State(wheelPositions.getLeft(), 0, 0),
-							new State(wheelPositions.getRight(), 0, 0),
-							targetPathData.getCenterPose(), wheelPositions.getTime(),
-							targetPathData.isBackwards());
-						targetPathData = staticPathData;
+						setStaticPathData(leftLength, rightLength, targetPathData[Trajectory.X],
+							targetPathData[Trajectory.Y], targetPathData[Trajectory.ANGLE], time, isTargetBackwards);
+						targetStaticPathData();
 						currentMotionState = MotionState.FINISHING;
+						recordEvent(MotionEvent.QUEUE_EMPTY, time);
 					}
 				}
 			} else {
@@ -155,60 +309,57 @@ public class MotionController {
 
 				currentPath = paths.poll();
 				if (currentPath != null) {
-					System.out.println("Getting initial path");
-//					actualPosition = currentPath.getPathData().get(0).getCenterPose();
-					pathStartTime = wheelPositions.getTime();
-					pdIterator = currentPath.getPathData().listIterator();
-					pdPrevious = targetPathData = pdIterator.next();
-					pdNext = pdIterator.next();
+					pathStartTime = time;
+					currentTrajectory = currentPath.getTrajectory();
 
 					currentMotionState = MotionState.MOVING;
-					targetPathData = interpolate(wheelPositions);
+					interpolate(time);
 
 					integratedLagError = 0;
 					integratedAngleError = 0;
 
 					pathNumber += 1;
+					recordEvent(MotionEvent.PATH_STARTED, time);
 				} else {
-//					System.out.println("No initial path not moving");
-					targetPathData = staticPathData;
+					targetStaticPathData();
 				}
 			}
-			updateActualPosition(wheelPositions);
+			prefetchNextPath();
 			findCurrentError();
 
 			double centerPower = 0;
 			double steerPower = 0;
 			if (currentMotionState == MotionState.MOVING) {
 				// feed forward
-
-				leftPower += ((kV * targetPathData.getLeftState().getVelocity())
-					+ (kK * Math.signum(targetPathData.getLeftState().getVelocity())))
-					+ (kAcc * targetPathData.getLeftState().getAcceleration());
-				rightPower += ((kV * targetPathData.getRightState().getVelocity())
-					+ (kK * Math.signum(targetPathData.getRightState().getVelocity())))
-					+ (kAcc * targetPathData.getRightState().getAcceleration());
+				double leftVelocity = targetPathData[Trajectory.LEFT_VELOCITY];
+				double rightVelocity = targetPathData[Trajectory.RIGHT_VELOCITY];
+				leftFeedForward += ((kV * leftVelocity) + (kK * Math.signum(leftVelocity)))
+					+ (kAcc * targetPathData[Trajectory.LEFT_ACCELERATION]);
+				rightFeedForward += ((kV * rightVelocity) + (kK * Math.signum(rightVelocity)))
+					+ (kAcc * targetPathData[Trajectory.RIGHT_ACCELERATION]);
 				// feed back
-				double steerPowerXTE = kS * errorVector.getXTrack();
-				double steerPowerAngle = kAng * errorVector.getAngle();
-				double centerPowerLag = kL * errorVector.getLag();
+				double steerPowerXTE = kS * crossTrackError;
+				double steerPowerAngle = kAng * angleError;
+				double centerPowerLag = kL * lagError;
 
-				centerPower = ((leftPower + rightPower) / 2.0) + centerPowerLag;
+				centerPower = ((leftFeedForward + rightFeedForward) / 2.0) + centerPowerLag;
 				steerPower = Math.max(-1,
-					Math.min(1, ((rightPower - leftPower) / 2) + steerPowerXTE + steerPowerAngle));
+					Math.min(1, ((rightFeedForward - leftFeedForward) / 2) + steerPowerXTE + steerPowerAngle));
 				centerPower = Math
 					.max(-1 + Math.abs(steerPower),
 						Math.min(1 - Math.abs(steerPower), centerPower));
 			}
-			if ((currentMotionState == MotionState.FINISHING) || isClose(1)) {
+			if ((currentMotionState == MotionState.FINISHING) || isCloseToEnd(1)) {
 //          to give the extra oomph when finished the path but there is a little bit more to do//FIXME left, right powers somehow manage to be greater than 1
 
-				if ((wheelPositions.getTime() - staticPathData.getTime()) >= 2) {
+				// The static time is only set when the queue runs out, so only time out once the robot is finishing
+				if ((currentMotionState == MotionState.FINISHING)
+					&& ((time - staticPathData[Trajectory.TIME]) >= 2)) {
 					currentMotionState = MotionState.WAITING;
 				}
 
-				integratedLagError += iLag * errorVector.getLag();
-				integratedAngleError += iAng * errorVector.getAngle();
+				integratedLagError += iLag * lagError;
+				integratedAngleError += iAng * angleError;
 
 				integratedAngleError = Math.max(Math.min(0.5, integratedAngleError), -0.5);
 				integratedLagError = Math.max(Math.min(0.5, integratedLagError), -0.5);
@@ -224,67 +375,184 @@ public class MotionController {
 				centerPower = 0;
 			}
 
-			return new RobotPair(centerPower - steerPower, centerPower + steerPower,
-				wheelPositions.getTime());
+			leftPower = centerPower - steerPower;
+			rightPower = centerPower + steerPower;
+		} else {
+			leftPower = 0;
+			rightPower = 0;
 		}
-		return new RobotPair(0, 0, wheelPositions.getTime());
+		publish();
 	}
 
 	/**
-	 * Finds the target x, y, angle, velocityLeft, and velocityRight
+	 * Publishes the time of this tick, and a new snapshot if anything in it has changed
+	 */
+	private void publish() {
+		if (!snapshot.isSame(running, currentPath, pathNumber, currentMotionState, pathStartTime)) {
+			if (snapshot.getMotionState() != currentMotionState) {
+				recordEvent(MotionEvent.STATE_CHANGED, tickTime);
+			}
+			snapshot = new MotionSnapshot(running, currentPath, pathNumber, currentMotionState, pathStartTime);
+		}
+		publishedTickTime = tickTime;
+	}
+
+	/**
+	 * Records an event with the state of the control thread
+	 */
+	private void recordEvent(MotionEvent event, double time) {
+		eventLog.record(event, time, pathNumber, currentMotionState);
+	}
+
+	/**
+	 * Records an event with the published state, for threads other than the control thread
 	 *
-	 * @return a new MotionData with the interpolated data
-	 */
-	private PathData interpolate(RobotPair wheelPositions) {
-		double currentTime = wheelPositions.getTime() - pathStartTime;
-		while (currentTime > pdNext.getTime()) {
-			if (pdIterator.hasNext()) {
-				pdPrevious = pdNext;
-				pdNext = pdIterator.next();
-			} else {
-				pdPrevious = pdNext;
-				currentPath.setFinished(true);
-				return pdNext;
+	 * @param event - what happened
+	 */
+	public final void recordEvent(MotionEvent event) {
+		MotionSnapshot snapshot = this.snapshot;
+		eventLog.record(event, publishedTickTime, snapshot.getPathNumber(), snapshot.getMotionState());
+	}
+
+	/**
+	 * The events are printed by a drainer thread once the scheduler is enabled. When stepping by hand, drain them with
+	 * MotionEventLog.drainTo or start the drainer.
+	 *
+	 * @return the ring the controller reports path changes and state changes to
+	 */
+	public final MotionEventLog getEventLog() {
+		return eventLog;
+	}
+
+	/**
+	 * Sets where the robot should hold still when it is not following a path
+	 */
+	private void setStaticPathData(double leftLength, double rightLength, double x, double y, double angle,
+		double time, boolean isBackwards) {
+		Arrays.fill(staticPathData, 0);
+		staticPathData[Trajectory.LEFT_LENGTH] = leftLength;
+		staticPathData[Trajectory.RIGHT_LENGTH] = rightLength;
+		staticPathData[Trajectory.X] = x;
+		staticPathData[Trajectory.Y] = y;
+		staticPathData[Trajectory.ANGLE] = angle;
+		staticPathData[Trajectory.TIME] = time;
+		isStaticBackwards = isBackwards;
+	}
+
+	private void targetStaticPathData() {
+		System.arraycopy(staticPathData, 0, targetPathData, 0, Trajectory.SAMPLE_SIZE);
+		isTargetBackwards = isStaticBackwards;
+	}
+
+	/**
+	 * Asks for the next queued path to be warmed in the background once the current one is within prefetchLookahead of
+	 * its end, so switching to it does not generate it on this thread
+	 */
+	private void prefetchNextPath() {
+		if ((prefetchLookahead > 0) && isCloseToEnd(prefetchLookahead)) {
+			Path next = paths.peek();
+			if ((next != null) && (next != prefetchedPath)) {
+				prefetchedPath = next;
+				prefetcher.setChunkTime(generationLookahead);
+				prefetcher.prefetch(next);
+				recordEvent(MotionEvent.PATH_PREFETCHED, tickTime);
 			}
 		}
+	}
+
+	/**
+	 * Finds the target x, y, angle, velocityLeft, and velocityRight and puts them in targetPathData
+	 */
+	private void interpolate(double time) {
+		Trajectory trajectory = currentTrajectory;
+		double currentTime = time - pathStartTime;
+		if (!currentPath.isGenerated()) {
+			currentPath.generateUntil(currentTime + generationLookahead);
+		}
+		if (currentTime > trajectory.getEndTime()) {
+			currentPath.setFinished(true);
+			trajectory.getSample(trajectory.size() - 1, targetPathData);
+			isTargetBackwards = trajectory.isBackwards();
+			return;
+		}
+		trajectory.sampleAt(currentTime, targetPathData);
+		isTargetBackwards = currentPath.isBackwards();
+	}
+
+	/**
+	 * Removes all queued motions. The path being followed is not stopped.
+	 */
+	public final void clearMotions() {
+		Path path;
+		while ((path = paths.poll()) != null) {
+			path.cancelGeneration();
+		}
+	}
 
-		double timePrevious = pdPrevious.getTime();
-		double timeNext = pdNext.getTime();
-		double dTime = timeNext - timePrevious;
-		double rctn =
-			(timeNext - currentTime) / dTime; // Ratio of the current time to the next pose time
-		double rltc =
-			(currentTime - timePrevious)
-				/ dTime; // Ratio of the previous time to the current pose
-		// time
+	/**
+	 * @return how far ahead of the robot, in seconds, streamed paths are generated
+	 */
+	public final double getGenerationLookahead() {
+		return generationLookahead;
+	}
+
+	/**
+	 * Keep this larger than the 1 second window the controller uses to start integrating errors at the end of a path.
+	 *
+	 * @param generationLookahead how far ahead of the robot, in seconds, streamed paths should be generated
+	 * @see DriveKinematics#isStreamingGeneration()
+	 */
+	public final void setGenerationLookahead(double generationLookahead) {
+		this.generationLookahead = generationLookahead;
+	}
 
-		double lengthLeft = ((pdPrevious.getLeftState().getLength()) * rctn)
-			+ ((pdNext.getLeftState().getLength()) * rltc);
-		double lengthRight = ((pdPrevious.getRightState().getLength()) * rctn)
-			+ ((pdNext.getRightState().getLength()) * rltc);
+	/**
+	 * @return how many seconds before the end of the current path the next queued path starts being warmed
+	 */
+	public final double getPrefetchLookahead() {
+		return prefetchLookahead;
+	}
 
-		// Current pose is made from the weighted average of the x, y, and angle values
-		double x =
-			(pdPrevious.getCenterPose().getX() * rctn) + (pdNext.getCenterPose().getX() * rltc);
-		double y =
-			(pdPrevious.getCenterPose().getY() * rctn) + (pdNext.getCenterPose().getY() * rltc);
-		double angle =
-			(pdPrevious.getCenterPose().getAngle() * rctn) + (pdNext.getCenterPose().getAngle()
-				* rltc);
+	/**
+	 * The next queued path is generated and read on a background thread once the robot is this close to the end of the
+	 * current path, so switching paths does not stall a tick. Paths that are already generated gain little from it.
+	 *
+	 * @param prefetchLookahead how many seconds before the end of the current path to start, or 0 to turn it off
+	 */
+	public final void setPrefetchLookahead(double prefetchLookahead) {
+		if (prefetchLookahead < 0) {
+			throw new IllegalArgumentException("prefetchLookahead must not be negative");
+		}
+		this.prefetchLookahead = prefetchLookahead;
+	}
 
-		State left = new State(lengthLeft, pdNext.getLeftState().getVelocity(),
-			pdNext.getLeftState().getAcceleration());
-		State right = new State(lengthRight, pdNext.getRightState().getVelocity(),
-			pdNext.getRightState().getAcceleration());
-		Pose centerPose = new Pose(x, y, angle);
-		return new PathData(left, right, centerPose, currentTime, currentPath.isBackwards());
+	/**
+	 * The period, overrun policy and thread priority of the loop can be changed here before the scheduler is enabled.
+	 *
+	 * @return the loop that runs the controller every period
+	 */
+	public final ControlLoopExecutor getControlLoop() {
+		return controlLoop;
 	}
 
 	/**
-	 * Removes all queued motions
+	 * Give this loop a shorter period than the control loop, for example 1 or 2 milliseconds, before the scheduler is
+	 * enabled to integrate the odometry on its own thread.
+	 *
+	 * @return the loop that reads the wheel positions and updates the actual position when odometry is separate
 	 */
-	public final synchronized void clearMotions() {
-		paths.clear();
+	public final ControlLoopExecutor getOdometryLoop() {
+		return odometryLoop;
+	}
+
+	/**
+	 * Give this loop a different period than the control loop before the scheduler is enabled to log on its own
+	 * thread. It logs the latest control tick each period, so a longer period logs fewer ticks.
+	 *
+	 * @return the loop that logs the control ticks when logging is separate
+	 */
+	public final ControlLoopExecutor getLoggingLoop() {
+		return loggingLoop;
 	}
 
 	/**
@@ -292,31 +560,153 @@ public class MotionController {
 	 */
 	public final synchronized void enableScheduler(Pose starting) {
 		if (!running) {
-			System.out.println("Enabling scheduler");
-			System.out.println(starting);
-			actualPosition = starting;
-			previousLengths = drivetrain.getWheelPositions();
-
-			staticPathData = new PathData(
-				new State(drivetrain.getWheelPositions().getLeft(), 0, 0),
-				new State(drivetrain.getWheelPositions().getRight(), 0, 0),
-				actualPosition,
-				0, true);
-
-			targetPathData = staticPathData;
-
-			currentTimerTask = new MotionTask();
-			controller.schedule(currentTimerTask, 0L, period);
-			currentMotionState = MotionState.WAITING;
-			running = true;
+			eventLog.startDrainer();
+			initializeMotion(starting);
+			recordEvent(MotionEvent.SCHEDULER_ENABLED);
+
+			isOdometrySeparate = odometryLoop.getPeriodNanos() != controlLoop.getPeriodNanos();
+			isLoggingSeparate = loggingLoop.getPeriodNanos() != controlLoop.getPeriodNanos();
+			if (isOdometrySeparate) {
+				odometryLoop.start(new OdometryTask());
+			}
+			controlLoop.start(new MotionTask());
+			if (isLoggingSeparate) {
+				loggingLoop.start(new LoggingTask());
+			}
+		}
+	}
+
+	/**
+	 * Starts the queue of motions without the timer. Each call to step() then runs one tick, so a simulation can run
+	 * faster than real time.
+	 *
+	 * @param starting - where the robot starts
+	 */
+	public final synchronized void enableManualStepping(Pose starting) {
+		if (!running) {
+			isOdometrySeparate = false;
+			isLoggingSeparate = false;
+			initializeMotion(starting);
+		}
+	}
+
+	/**
+	 * Runs one tick of the controller on the calling thread: reads the wheel positions, sets the speeds and logs the
+	 * result. This is what the control loop runs every period. When odometry or logging is separate the tick takes the
+	 * latest actual position from the odometry thread or leaves the logging to the logging thread. Only one thread may
+	 * step at a time.
+	 */
+	public final void step() {
+		long tickStart = System.nanoTime();
+		if (previousTickStart != 0) {
+			periodHistogram.record(tickStart - previousTickStart);
+		}
+		previousTickStart = tickStart;
+
+		long computeStart;
+		if (isOdometrySeparate) {
+			poseHandoff.read(feedbackPose);
+			computeStart = System.nanoTime();
+			calculatePowers();
+		} else {
+			drivetrain.getWheelPositions(wheelPositions);
+			computeStart = System.nanoTime();
+			sensorReadHistogram.record(computeStart - tickStart);
+			calculateSpeeds(wheelPositions[RobotPair.LEFT], wheelPositions[RobotPair.RIGHT],
+				wheelPositions[RobotPair.TIME]);
+		}
+		computeTimeHistogram.record(System.nanoTime() - computeStart);
+		drivetrain.setSpeeds(leftPower, rightPower);
+
+		if (isLoggingSeparate) {
+			logRecord[MotionLogFile.TIME] = tickTime;
+			logRecord[MotionLogFile.ACTUAL_X] = feedbackPose[PoseHistory.X];
+			logRecord[MotionLogFile.ACTUAL_Y] = feedbackPose[PoseHistory.Y];
+			logRecord[MotionLogFile.ACTUAL_ANGLE] = feedbackPose[PoseHistory.ANGLE];
+			logRecord[MotionLogFile.TARGET_X] = targetPathData[Trajectory.X];
+			logRecord[MotionLogFile.TARGET_Y] = targetPathData[Trajectory.Y];
+			logRecord[MotionLogFile.TARGET_ANGLE] = targetPathData[Trajectory.ANGLE];
+			logRecord[MotionLogFile.CROSS_TRACK_ERROR] = crossTrackError;
+			logRecord[MotionLogFile.LAG_ERROR] = lagError;
+			logRecord[MotionLogFile.ANGLE_ERROR] = angleError;
+			logRecord[MotionLogFile.LEFT_POWER] = leftPower;
+			logRecord[MotionLogFile.RIGHT_POWER] = rightPower;
+			logRecord[MotionLogFile.PATH_NUMBER] = pathNumber;
+			logRecord[MotionLogFile.MOTION_STATE] = currentMotionState.ordinal();
+			logHandoff.write(logRecord);
+		} else {
+			motionLogger.addMotionData(tickTime, feedbackPose[PoseHistory.X], feedbackPose[PoseHistory.Y],
+				feedbackPose[PoseHistory.ANGLE], targetPathData[Trajectory.X], targetPathData[Trajectory.Y],
+				targetPathData[Trajectory.ANGLE], crossTrackError, lagError, angleError, leftPower, rightPower,
+				pathNumber, currentMotionState);
+		}
+	}
+
+	/**
+	 * Runs one tick of the odometry thread: reads the wheel positions, updates the actual position and hands it to the
+	 * control thread
+	 */
+	private void stepOdometry() {
+		long readStart = System.nanoTime();
+		drivetrain.getWheelPositions(wheelPositions);
+		sensorReadHistogram.record(System.nanoTime() - readStart);
+		updateOdometry(wheelPositions[RobotPair.LEFT], wheelPositions[RobotPair.RIGHT],
+			wheelPositions[RobotPair.TIME]);
+		poseHandoff.write(odometryPose);
+	}
+
+	/**
+	 * Runs one tick of the logging thread: logs the latest control tick if it has not been logged yet
+	 */
+	private void stepLogging() {
+		long version = logHandoff.read(loggedRecord);
+		if (version == loggedVersion) {
+			return;
 		}
+		loggedVersion = version;
+		motionLogger.addMotionData(loggedRecord[MotionLogFile.TIME], loggedRecord[MotionLogFile.ACTUAL_X],
+			loggedRecord[MotionLogFile.ACTUAL_Y], loggedRecord[MotionLogFile.ACTUAL_ANGLE],
+			loggedRecord[MotionLogFile.TARGET_X], loggedRecord[MotionLogFile.TARGET_Y],
+			loggedRecord[MotionLogFile.TARGET_ANGLE], loggedRecord[MotionLogFile.CROSS_TRACK_ERROR],
+			loggedRecord[MotionLogFile.LAG_ERROR], loggedRecord[MotionLogFile.ANGLE_ERROR],
+			loggedRecord[MotionLogFile.LEFT_POWER], loggedRecord[MotionLogFile.RIGHT_POWER],
+			(int) loggedRecord[MotionLogFile.PATH_NUMBER],
+			MOTION_STATES[(int) loggedRecord[MotionLogFile.MOTION_STATE]]);
+	}
+
+	/**
+	 * Resets the controller to start from a position without scheduling it, with the drivetrain's current gains
+	 */
+	final void initializeMotion(Pose starting) {
+		readGains();
+		RobotPair wheelPositions = drivetrain.getWheelPositions();
+		odometryPose[PoseHistory.TIME] = wheelPositions.getTime();
+		odometryPose[PoseHistory.X] = starting.getX();
+		odometryPose[PoseHistory.Y] = starting.getY();
+		odometryPose[PoseHistory.ANGLE] = starting.getAngle();
+		odometryPose[PoseHistory.LEFT_LENGTH] = wheelPositions.getLeft();
+		odometryPose[PoseHistory.RIGHT_LENGTH] = wheelPositions.getRight();
+
+		setStaticPathData(wheelPositions.getLeft(), wheelPositions.getRight(), starting.getX(), starting.getY(),
+			starting.getAngle(), 0, true);
+		targetStaticPathData();
+		poseHistory.clear();
+		poseHistory.add(odometryPose);
+		appliedCorrectionVersion = correctionHandoff.getVersion();
+		System.arraycopy(odometryPose, 0, feedbackPose, 0, PoseHistory.SIZE);
+		poseHandoff.write(odometryPose);
+		loggedVersion = logHandoff.getVersion();
+		currentMotionState = MotionState.WAITING;
+		previousTickStart = 0;
+		running = true;
+		publish();
 	}
 
 	/**
 	 * @return Whether or not the queue has ended
 	 */
 	public final boolean isFinished() {
-		return (currentPath == null) && (currentMotionState == MotionState.FINISHING);
+		return snapshot.isFinished();
 	}
 
 	/**
@@ -327,80 +717,116 @@ public class MotionController {
 	}
 
 	/**
+	 * While a streamed path is being generated this is measured against the samples generated so far.
+	 *
 	 * @return Percent of the current Path that the robot is at, based off of the time
 	 */
 	public double getPercentDone(Path pathToUse) {
-		if (currentPath.equals(pathToUse)) {
-			double currentTime = drivetrain.getWheelPositions().getTime() - pathStartTime;
-			double endTime = currentPath.getPathData().getLast().getTime();
+		MotionSnapshot snapshot = this.snapshot;
+		Path currentPath = snapshot.getCurrentPath();
+		if ((currentPath != null) && currentPath.equals(pathToUse)) {
+			double currentTime = publishedTickTime - snapshot.getPathStartTime();
+			double endTime = currentPath.getTrajectory().getEndTime();
 			return currentTime / endTime;
 		}
 		return -1;
 	}
 
 	/**
-	 * Pauses the motions,
+	 * @return how long calculating the powers takes each tick, in nanoseconds
+	 */
+	public final LatencyHistogram getComputeTimeHistogram() {
+		return computeTimeHistogram;
+	}
+
+	/**
+	 * @return the time between the starts of ticks, in nanoseconds
+	 */
+	public final LatencyHistogram getPeriodHistogram() {
+		return periodHistogram;
+	}
+
+	/**
+	 * @return how long reading the wheel positions from the drivetrain takes each time, on the odometry loop if it is
+	 * separate, in nanoseconds
+	 */
+	public final LatencyHistogram getSensorReadHistogram() {
+		return sensorReadHistogram;
+	}
+
+	/**
+	 * @return how many ticks of the control loop finished after the next deadline since the last reset
+	 */
+	public final long getOverrunCount() {
+		return controlLoop.getOverrunCount();
+	}
+
+	/**
+	 * Clears the histograms and the overrun count, for example between autonomous runs. Do this while the controller
+	 * is not running.
+	 */
+	public final void resetInstrumentation() {
+		computeTimeHistogram.reset();
+		periodHistogram.reset();
+		sensorReadHistogram.reset();
+		controlLoop.resetCounters();
+		odometryLoop.resetCounters();
+		loggingLoop.resetCounters();
+	}
+
+	/**
+	 * @return what the controller is doing, as of the last change
+	 */
+	public final MotionSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * @return the time of the wheel positions of the last tick
+	 */
+	public final double getTickTime() {
+		return publishedTickTime;
+	}
+
+	/**
+	 * Pauses the motions. Waits for a tick that is already running to finish, so afterwards the caller may change the
+	 * state of the motion.
 	 */
 	public final synchronized void stopScheduler() {
 		if (running) {
-			System.out.println("Disabling scheduler");
 			running = false;
-			currentTimerTask.cancel();
-			controller.purge();
+			controlLoop.stop();
+			odometryLoop.stop();
+			loggingLoop.stop();
+			if (isLoggingSeparate) {
+				// Log the last control tick
+				stepLogging();
+			}
+			motionLogger.flushCapture();
 			currentPath = null;
 			drivetrain.setSpeeds(0, 0);
 			pathNumber = 0;
+			publish();
+			recordEvent(MotionEvent.SCHEDULER_DISABLED);
 		}
 	}
 
 	/**
-	 * Updates where the robot thinks it is, based off of the encoder lengths
-	 */
-	private void updateActualPosition(RobotPair wheelPositions) {
-		double arcLeft = wheelPositions.getLeft() - previousLengths.getLeft();
-		double arcRight = wheelPositions.getRight() - previousLengths.getRight();
-		double dAngle = (arcRight - arcLeft) / Path.getRobotWidth();
-		double arcCenter = (arcRight + arcLeft) / 2;
-		double dX;
-		double dY;
-		if (Math.abs(dAngle) < 0.01) {
-			dX = arcCenter * StrictMath.cos(actualPosition.getAngle());
-			dY = arcCenter * StrictMath.sin(actualPosition.getAngle());
-		} else {
-			dX = arcCenter * (
-				((StrictMath.sin(dAngle) * StrictMath.cos(actualPosition.getAngle())) / dAngle)
-					- (
-					((StrictMath.cos(dAngle) - 1) * StrictMath.sin(actualPosition.getAngle()))
-						/ dAngle));
-			dY = arcCenter * (
-				((StrictMath.sin(dAngle) * StrictMath.sin(actualPosition.getAngle())) / dAngle)
-					- (
-					((StrictMath.cos(dAngle) - 1) * StrictMath.cos(actualPosition.getAngle()))
-						/ dAngle));
-		}
-
-		actualPosition = actualPosition.offset(dX, dY, dAngle);
-		previousLengths = wheelPositions;
-	}
-
-	/**
-	 * Finds the current lag and cross track ErrorVector
+	 * Finds the current lag, cross track and angle errors
 	 */
 	private void findCurrentError() {
-		Pose targetPose = targetPathData.getCenterPose();
-		Pose actualPose = actualPosition;
-		double dX = targetPose.getX() - actualPose.getX();
-		double dY = targetPose.getY() - actualPose.getY();
-		double angle = targetPose.getAngle();
+		double dX = targetPathData[Trajectory.X] - feedbackPose[PoseHistory.X];
+		double dY = targetPathData[Trajectory.Y] - feedbackPose[PoseHistory.Y];
+		double angle = targetPathData[Trajectory.ANGLE];
 		// error in direction facing
-		double lagError = (dX * StrictMath.cos(angle)) + (dY * StrictMath.sin(angle));
+		lagError = (dX * StrictMath.cos(angle)) + (dY * StrictMath.sin(angle));
 		// error perpendicular to direction facing
 
-		double crossTrackError = (-dX * StrictMath.sin(angle)) + (dY * StrictMath.cos(angle));
+		crossTrackError = (-dX * StrictMath.sin(angle)) + (dY * StrictMath.cos(angle));
 		// the error of the current angle
-		double angleError = targetPose.getAngle() - actualPose.getAngle();
+		angleError = angle - feedbackPose[PoseHistory.ANGLE];
 
-		if (targetPathData.isBackwards()) {
+		if (isTargetBackwards) {
 			crossTrackError *= -1;
 		}
 
@@ -409,20 +835,60 @@ public class MotionController {
 		} else if (angleError < -Math.PI) {
 			angleError += 2 * Math.PI;
 		}
-		errorVector = new ErrorVector(lagError, crossTrackError, angleError);
 	}
 
+	/**
+	 * A streamed path is never close until it is fully generated.
+	 *
+	 * @param closeTime how many seconds from the end of the path counts as close
+	 * @return if the robot is within closeTime of the end of the current path
+	 */
 	public boolean isClose(double closeTime) {
-		return (currentPath != null) && (targetPathData != null)
-			&& (((currentPath.getPathData().getLast().getTime() + pathStartTime) - targetPathData
-			.getTime())
-			<= closeTime);
+		MotionSnapshot snapshot = this.snapshot;
+		Path currentPath = snapshot.getCurrentPath();
+		return (currentPath != null) && currentPath.isGenerated()
+			&& isCloseToEnd(currentPath.getTrajectory(), publishedTickTime - snapshot.getPathStartTime(), closeTime);
+	}
+
+	/**
+	 * isClose for the control thread, which reads its own state instead of the published one
+	 */
+	private boolean isCloseToEnd(double closeTime) {
+		return (currentPath != null) && currentPath.isGenerated()
+			&& isCloseToEnd(currentTrajectory, tickTime - pathStartTime, closeTime);
+	}
+
+	/**
+	 * @param pathTime - the time since the path started. Trajectory times start at 0 with the path, while tick times
+	 * are the time of the wheel positions, like the FPGA time.
+	 */
+	private static boolean isCloseToEnd(Trajectory trajectory, double pathTime, double closeTime) {
+		return (trajectory.getEndTime() - pathTime) <= closeTime;
+	}
+
+	/**
+	 * Only for the thread that runs the ticks
+	 *
+	 * @return the power sent to the left wheels on the last tick
+	 */
+	public final double getLeftPower() {
+		return leftPower;
+	}
+
+	/**
+	 * Only for the thread that runs the ticks
+	 *
+	 * @return the power sent to the right wheels on the last tick
+	 */
+	public final double getRightPower() {
+		return rightPower;
 	}
 
 	@Override
 	public String toString() {
 		return "MotionController{" +
 			"drivetrain=" + drivetrain +
+			", kinematics=" + kinematics +
 			", kV=" + kV +
 			", kK=" + kK +
 			", kAcc=" + kAcc +
@@ -430,50 +896,84 @@ public class MotionController {
 			", kL=" + kL +
 			", kAng=" + kAng +
 			", paths=" + paths +
-			", period=" + period +
 			", motionLogger=" + motionLogger +
 			", iAng=" + iAng +
 			", iLag=" + iLag +
-			", controller=" + controller +
+			", controlLoop=" + controlLoop +
+			", odometryLoop=" + odometryLoop +
+			", loggingLoop=" + loggingLoop +
+			", isOdometrySeparate=" + isOdometrySeparate +
+			", isLoggingSeparate=" + isLoggingSeparate +
+			", eventLog=" + eventLog +
 			", running=" + running +
 			", currentPath=" + currentPath +
-			", staticPathData=" + staticPathData +
-			", actualPosition=" + actualPosition +
-			", targetPathData=" + targetPathData +
-			", previousLengths=" + previousLengths +
+			", staticPathData=" + Arrays.toString(staticPathData) +
+			", isStaticBackwards=" + isStaticBackwards +
+			", targetPathData=" + Arrays.toString(targetPathData) +
+			", isTargetBackwards=" + isTargetBackwards +
+			", odometryPose=" + Arrays.toString(odometryPose) +
+			", poseHistory=" + poseHistory +
+			", appliedCorrectionVersion=" + appliedCorrectionVersion +
+			", feedbackPose=" + Arrays.toString(feedbackPose) +
+			", poseHandoff=" + poseHandoff +
+			", logHandoff=" + logHandoff +
 			", pathStartTime=" + pathStartTime +
-			", pdIterator=" + pdIterator +
-			", pdPrevious=" + pdPrevious +
-			", pdNext=" + pdNext +
-			", errorVector=" + errorVector +
-			", powers=" + powers +
-			", currentTimerTask=" + currentTimerTask +
+			", currentTrajectory=" + currentTrajectory +
+			", lagError=" + lagError +
+			", crossTrackError=" + crossTrackError +
+			", angleError=" + angleError +
+			", tickTime=" + tickTime +
+			", leftPower=" + leftPower +
+			", rightPower=" + rightPower +
 			", currentMotionState=" + currentMotionState +
 			", integratedLagError=" + integratedLagError +
 			", integratedAngleError=" + integratedAngleError +
 			", pathNumber=" + pathNumber +
+			", generationLookahead=" + generationLookahead +
+			", prefetcher=" + prefetcher +
+			", prefetchLookahead=" + prefetchLookahead +
+			", prefetchedPath=" + prefetchedPath +
+			", snapshot=" + snapshot +
+			", publishedTickTime=" + publishedTickTime +
+			", computeTimeHistogram=" + computeTimeHistogram +
+			", periodHistogram=" + periodHistogram +
+			", sensorReadHistogram=" + sensorReadHistogram +
+			", overrunCount=" + getOverrunCount() +
 			'}';
 	}
 
 	/**
-	 * 1 Runs the calculations with a TimerTask
+	 * Runs the calculations on the control loop
 	 *
 	 * @author Russell Newton, WaltonRobotics
 	 */
-	private class MotionTask extends TimerTask {
+	private class MotionTask implements Runnable {
+
+		@Override
+		public final void run() {
+			step();
+		}
+	}
+
+	/**
+	 * Runs the odometry on the odometry loop
+	 */
+	private class OdometryTask implements Runnable {
+
+		@Override
+		public final void run() {
+			stepOdometry();
+		}
+	}
+
+	/**
+	 * Runs the logging on the logging loop
+	 */
+	private class LoggingTask implements Runnable {
 
 		@Override
 		public final void run() {
-//			if (currentPath != null) {
-			RobotPair wheelPositions = drivetrain.getWheelPositions();
-//			updateActualPosition(wheelPositions);
-//			findCurrentError();
-			powers = calculateSpeeds(wheelPositions);
-			drivetrain.setSpeeds(powers.getLeft(), powers.getRight());
-			motionLogger.addMotionData(
-				new MotionData(actualPosition, targetPathData.getCenterPose(), errorVector,
-					powers, pathNumber, currentMotionState));
-//			}
+			stepLogging();
 		}
 	}
 }
@@ -0,0 +1,45 @@
+package org.waltonrobotics.controller;
+
+/**
+ * The things the MotionController reports through its MotionEventLog
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public enum MotionEvent {
+	SCHEDULER_ENABLED("Enabling scheduler"),
+	SCHEDULER_DISABLED("Disabling scheduler"),
+	/**
+	 * A path was taken from the queue and is being followed
+	 */
+	PATH_STARTED("Starting path"),
+	/**
+	 * The next queued path is being warmed in the background
+	 */
+	PATH_PREFETCHED("Prefetching next path"),
+	/**
+	 * The robot reached the end of the current path
+	 */
+	PATH_FINISHED("Current path is finished"),
+	/**
+	 * The last path finished and there were none left in the queue
+	 */
+	QUEUE_EMPTY("Done with motions! :)"),
+	/**
+	 * The motion state changed, the new one is in the event
+	 */
+	STATE_CHANGED("Motion state changed"),
+	/**
+	 * A motion command ended or was interrupted
+	 */
+	COMMAND_ENDED("Motion command ended");
+
+	private final String description;
+
+	MotionEvent(String description) {
+		this.description = description;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+}
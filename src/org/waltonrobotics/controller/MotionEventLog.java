@@ -0,0 +1,228 @@
+package org.waltonrobotics.controller;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fixed size ring of MotionEvents, so the control thread can report what it is doing without printing. Recording an
+ * event never blocks or allocates: the columns are allocated up front and a slot is claimed with a compare and set. If
+ * the ring is full the event is dropped and counted instead. A drainer thread formats the events and prints them off
+ * the control thread, or they can be drained by hand.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public class MotionEventLog {
+
+	/**
+	 * The number of events the ring holds unless changed
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+	/**
+	 * How often the drainer empties the ring, 20 milliseconds
+	 */
+	public static final long DRAIN_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+	private final int mask;
+	private final MotionEvent[] events;
+	private final long[] nanoTimes;
+	private final double[] times;
+	private final int[] pathNumbers;
+	private final MotionState[] motionStates;
+	// Slot i is free for the producer at position p when it holds p, and full for the consumer when it holds p + 1
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private long head;
+	private final StringBuilder line = new StringBuilder(128);
+	private volatile PrintStream output = System.out;
+	private Thread drainer;
+
+	/**
+	 * @param capacity - the number of events the ring holds, a power of two
+	 */
+	public MotionEventLog(int capacity) {
+		if ((capacity <= 0) || (Integer.bitCount(capacity) != 1)) {
+			throw new IllegalArgumentException("capacity must be a power of two");
+		}
+		mask = capacity - 1;
+		events = new MotionEvent[capacity];
+		nanoTimes = new long[capacity];
+		times = new double[capacity];
+		pathNumbers = new int[capacity];
+		motionStates = new MotionState[capacity];
+		sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	public MotionEventLog() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Records an event. Any thread may call this, and it never blocks.
+	 *
+	 * @param event - what happened
+	 * @param time - the time of the wheel positions when it happened
+	 * @param pathNumber - the path number when it happened
+	 * @param motionState - the motion state after it happened
+	 * @return false if the ring was full and the event was dropped
+	 */
+	public final boolean record(MotionEvent event, double time, int pathNumber, MotionState motionState) {
+		long position;
+		int index;
+		while (true) {
+			position = tail.get();
+			index = (int) position & mask;
+			long difference = sequences.get(index) - position;
+			if (difference < 0) {
+				droppedCount.incrementAndGet();
+				return false;
+			}
+			if ((difference == 0) && tail.compareAndSet(position, position + 1)) {
+				break;
+			}
+		}
+		events[index] = event;
+		nanoTimes[index] = System.nanoTime();
+		times[index] = time;
+		pathNumbers[index] = pathNumber;
+		motionStates[index] = motionState;
+		sequences.lazySet(index, position + 1);
+		return true;
+	}
+
+	/**
+	 * Formats and prints every event in the ring, oldest first
+	 *
+	 * @param out - where to print the events
+	 * @return the number of events printed
+	 */
+	public final synchronized int drainTo(PrintStream out) {
+		int drained = 0;
+		while (true) {
+			int index = (int) head & mask;
+			if (sequences.get(index) != (head + 1)) {
+				break;
+			}
+			line.setLength(0);
+			line.append('[').append(times[index]).append("] path ").append(pathNumbers[index])
+				.append(' ').append(motionStates[index]).append(": ").append(events[index].getDescription());
+			long nanoTime = nanoTimes[index];
+			events[index] = null;
+			motionStates[index] = null;
+			sequences.lazySet(index, head + mask + 1);
+			head++;
+			drained++;
+
+			line.append(" (").append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - nanoTime))
+				.append(" ms ago)");
+			out.println(line);
+		}
+		return drained;
+	}
+
+	/**
+	 * Starts a daemon thread that drains the ring to the output every DRAIN_PERIOD_NANOS. Does nothing if it is
+	 * already running.
+	 */
+	public final synchronized void startDrainer() {
+		if (drainer != null) {
+			return;
+		}
+		drainer = new Thread(new Drainer(), "MotionEventLog");
+		drainer.setDaemon(true);
+		drainer.setPriority(Thread.MIN_PRIORITY);
+		drainer.start();
+	}
+
+	/**
+	 * Stops the drainer thread after it prints what is left in the ring
+	 */
+	public final void stopDrainer() {
+		Thread stopped;
+		synchronized (this) {
+			stopped = drainer;
+			if (stopped == null) {
+				return;
+			}
+			drainer = null;
+		}
+		LockSupport.unpark(stopped);
+		boolean isInterrupted = false;
+		while (stopped.isAlive()) {
+			try {
+				stopped.join();
+			} catch (InterruptedException e) {
+				isInterrupted = true;
+			}
+		}
+		if (isInterrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public final synchronized boolean isDraining() {
+		return drainer != null;
+	}
+
+	public final PrintStream getOutput() {
+		return output;
+	}
+
+	/**
+	 * @param output - where the drainer prints, System.out unless changed
+	 */
+	public final void setOutput(PrintStream output) {
+		if (output == null) {
+			throw new IllegalArgumentException("output must not be null");
+		}
+		this.output = output;
+	}
+
+	public final int getCapacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * @return how many events were dropped because the ring was full
+	 */
+	public final long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "MotionEventLog{" +
+			"capacity=" + getCapacity() +
+			", recorded=" + tail.get() +
+			", droppedCount=" + droppedCount.get() +
+			", isDraining=" + isDraining() +
+			'}';
+	}
+
+	/**
+	 * Drains the ring until the drainer is stopped
+	 */
+	private final class Drainer implements Runnable {
+
+		@Override
+		public void run() {
+			while (isCurrentDrainer()) {
+				drainTo(output);
+				LockSupport.parkNanos(this, DRAIN_PERIOD_NANOS);
+			}
+			drainTo(output);
+		}
+
+		private boolean isCurrentDrainer() {
+			synchronized (MotionEventLog.this) {
+				return drainer == Thread.currentThread();
+			}
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package org.waltonrobotics.controller;
+
+/**
+ * What the MotionController is doing, as published by the control thread. A new snapshot is published whenever the
+ * path, path number, motion state or path start time changes, so a snapshot never changes and can be read from any
+ * thread without locking.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public final class MotionSnapshot {
+
+	private final boolean isRunning;
+	private final Path currentPath;
+	private final int pathNumber;
+	private final MotionState motionState;
+	private final double pathStartTime;
+
+	/**
+	 * @param isRunning if the controller is running
+	 * @param currentPath the path being followed, or null
+	 * @param pathNumber how many paths have been started since the controller was enabled
+	 * @param motionState the state of the controller
+	 * @param pathStartTime the time the current path started, in the time of the wheel positions
+	 */
+	MotionSnapshot(boolean isRunning, Path currentPath, int pathNumber, MotionState motionState,
+		double pathStartTime) {
+		this.isRunning = isRunning;
+		this.currentPath = currentPath;
+		this.pathNumber = pathNumber;
+		this.motionState = motionState;
+		this.pathStartTime = pathStartTime;
+	}
+
+	/**
+	 * @return if this snapshot says the same as the given values
+	 */
+	boolean isSame(boolean isRunning, Path currentPath, int pathNumber, MotionState motionState,
+		double pathStartTime) {
+		return (this.isRunning == isRunning) && (this.currentPath == currentPath) && (this.pathNumber == pathNumber)
+			&& (this.motionState == motionState) && (Double.compare(this.pathStartTime, pathStartTime) == 0);
+	}
+
+	public boolean isRunning() {
+		return isRunning;
+	}
+
+	/**
+	 * @return the path being followed, or null if there is none
+	 */
+	public Path getCurrentPath() {
+		return currentPath;
+	}
+
+	public int getPathNumber() {
+		return pathNumber;
+	}
+
+	public MotionState getMotionState() {
+		return motionState;
+	}
+
+	public double getPathStartTime() {
+		return pathStartTime;
+	}
+
+	/**
+	 * @return if every queued path has been followed
+	 */
+	public boolean isFinished() {
+		return (currentPath == null) && (motionState == MotionState.FINISHING);
+	}
+
+	@Override
+	public String toString() {
+		return "MotionSnapshot{" +
+			"isRunning=" + isRunning +
+			", currentPath=" + currentPath +
+			", pathNumber=" + pathNumber +
+			", motionState=" + motionState +
+			", pathStartTime=" + pathStartTime +
+			'}';
+	}
+}
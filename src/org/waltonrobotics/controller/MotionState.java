@@ -3,7 +3,7 @@ package org.waltonrobotics.controller;
 /**
  * The state that the robot is in right now.
  */
-enum MotionState {
+public enum MotionState {
 	/**
 	 * The robot is moving through the path motion
 	 */
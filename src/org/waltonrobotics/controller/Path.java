@@ -11,21 +11,39 @@ import java.util.List;
  */
 public abstract class Path {
 
+	/**
+	 * @deprecated use DriveKinematics
+	 */
+	@Deprecated
 	public static int pathNumberOfSteps = 50; // TODO find better name for this variable
-	private static double robotWidth; // WHat if you have multiple robots running the same code? Should we account for that scenario?
+	private static double robotWidth;
+	private static boolean streamingGeneration = false;
+	private static boolean arcLengthParameterized = false;
+	private final DriveKinematics kinematics;
 	private final double vCruise;
 	private final double aMax;
 	private final boolean isBackwards;
 	private final List<Pose> keyPoints;
-	private boolean isFinished;
+	private volatile boolean isFinished;
+	private LinkedList<PathData> pathData;
+	private volatile Trajectory pathDataTrajectory;
+	private boolean isConvertingPathData;
+	private volatile boolean isGenerated = true;
+	private volatile boolean isGenerationCancelled;
 
 	/**
+	 * @param kinematics the robot width and generation settings to make the path with
 	 * @param vCruise cruise velocity of the robot, the velocity that the robot should try to reach
 	 * @param aMax the maximum acceleration the robot should achieve
 	 * @param isBackwards if the robot is travelling forwards or backwards
 	 * @param keyPoints the points that define the path
 	 */
-	protected Path(double vCruise, double aMax, boolean isBackwards, List<Pose> keyPoints) {
+	protected Path(DriveKinematics kinematics, double vCruise, double aMax, boolean isBackwards,
+		List<Pose> keyPoints) {
+		if (kinematics == null) {
+			throw new IllegalArgumentException("kinematics must not be null");
+		}
+		this.kinematics = kinematics;
 		this.isBackwards = isBackwards;
 		this.keyPoints = keyPoints;
 		if (vCruise == 0) {
@@ -40,38 +58,103 @@ public abstract class Path {
 		isFinished = false;
 	}
 
+	/**
+	 * Makes the path with the default DriveKinematics
+	 *
+	 * @param vCruise cruise velocity of the robot, the velocity that the robot should try to reach
+	 * @param aMax the maximum acceleration the robot should achieve
+	 * @param isBackwards if the robot is travelling forwards or backwards
+	 * @param keyPoints the points that define the path
+	 */
+	protected Path(double vCruise, double aMax, boolean isBackwards, List<Pose> keyPoints) {
+		this(DriveKinematics.getDefault(), vCruise, aMax, isBackwards, keyPoints);
+	}
+
 	public Path(double vCruise, double aMax, boolean isBackwards, Pose... keyPoints) {
 		this(vCruise, aMax, isBackwards, Arrays.asList(keyPoints));
 	}
 
+	public Path(DriveKinematics kinematics, double vCruise, double aMax, boolean isBackwards, Pose... keyPoints) {
+		this(kinematics, vCruise, aMax, isBackwards, Arrays.asList(keyPoints));
+	}
+
 	/**
-	 * @return the number of steps the path should be divided into. Default is 50.
+	 * @return the default number of steps paths should be divided into. Default is 50.
+	 * @deprecated use DriveKinematics.getPathNumberOfSteps()
 	 */
+	@Deprecated
 	public static int getPathNumberOfSteps() {
 		return pathNumberOfSteps;
 	}
 
 	/**
-	 * @param pathNumberOfSteps the new number of steps a path should be divided into
+	 * @param pathNumberOfSteps the new default number of steps paths should be divided into
+	 * @deprecated make paths with a DriveKinematics instead
 	 */
+	@Deprecated
 	public static void setPathNumberOfSteps(int pathNumberOfSteps) {
 		Path.pathNumberOfSteps = pathNumberOfSteps;
 	}
 
 	/**
-	 * @return The width of the robot from the outside of each wheel
+	 * @return The default width of the robot from the outside of each wheel
+	 * @deprecated use DriveKinematics.getRobotWidth()
 	 */
+	@Deprecated
 	public static double getRobotWidth() {
 		return robotWidth;
 	}
 
 	/**
-	 * @param robotWidth the new width of the robot
+	 * @param robotWidth the new default width of the robot
+	 * @deprecated make paths with a DriveKinematics instead
 	 */
+	@Deprecated
 	public static void setRobotWidth(double robotWidth) {
 		Path.robotWidth = robotWidth;
 	}
 
+	/**
+	 * @return if new paths generate their samples as the MotionController needs them instead of when they are
+	 * constructed by default. Default is false.
+	 * @deprecated use DriveKinematics.isStreamingGeneration()
+	 */
+	@Deprecated
+	public static boolean isStreamingGeneration() {
+		return streamingGeneration;
+	}
+
+	/**
+	 * When streaming, constructing a path is cheap and the MotionController generates samples a small window ahead of
+	 * where it is in the path.
+	 *
+	 * @param streamingGeneration if new paths should generate their samples as they are needed by default
+	 * @deprecated make paths with a DriveKinematics instead
+	 */
+	@Deprecated
+	public static void setStreamingGeneration(boolean streamingGeneration) {
+		Path.streamingGeneration = streamingGeneration;
+	}
+
+	/**
+	 * @return if new curves place their samples evenly in distance instead of evenly in t by default. Default is
+	 * false.
+	 * @deprecated use DriveKinematics.isArcLengthParameterized()
+	 */
+	@Deprecated
+	public static boolean isArcLengthParameterized() {
+		return arcLengthParameterized;
+	}
+
+	/**
+	 * @param arcLengthParameterized if new curves should place their samples evenly in distance by default
+	 * @deprecated make paths with a DriveKinematics instead
+	 */
+	@Deprecated
+	public static void setArcLengthParameterized(boolean arcLengthParameterized) {
+		Path.arcLengthParameterized = arcLengthParameterized;
+	}
+
 	/**
 	 * Bounds an angle to be in between -PI and PI. if the angles are more or less then the angle will cycle.
 	 *
@@ -88,6 +171,13 @@ public abstract class Path {
 		return angle;
 	}
 
+	/**
+	 * @return the robot width and generation settings the path was made with
+	 */
+	public final DriveKinematics getKinematics() {
+		return kinematics;
+	}
+
 	/**
 	 * @return if the robot is travelling backwards or not
 	 */
@@ -121,10 +211,133 @@ public abstract class Path {
 	}
 
 	/**
+	 * While a streamed path is being generated this only holds the samples generated so far. Paths override this or
+	 * getPathData(). If only getPathData() is overridden, this builds a Trajectory from it the first time it is called.
+	 *
+	 * @return the samples of the path
+	 * @see Trajectory
+	 */
+	public Trajectory getTrajectory() {
+		Trajectory trajectory = pathDataTrajectory;
+		if (trajectory == null) {
+			synchronized (this) {
+				trajectory = pathDataTrajectory;
+				if (trajectory == null) {
+					if (isConvertingPathData) {
+						throw new IllegalStateException(
+							getClass().getName() + " must override getTrajectory() or getPathData()");
+					}
+					isConvertingPathData = true;
+					try {
+						trajectory = new Trajectory(isBackwards);
+						for (PathData data : getPathData()) {
+							trajectory.add(data);
+						}
+					} finally {
+						isConvertingPathData = false;
+					}
+					pathDataTrajectory = trajectory;
+				}
+			}
+		}
+		return trajectory;
+	}
+
+	/**
+	 * Adds the next sample(s) to the Trajectory. Paths that generate their samples one step at a time override this
+	 * and call startGeneration() at the end of their constructor.
+	 *
+	 * @return if there are more samples left to generate
+	 */
+	protected boolean generateNext() {
+		return false;
+	}
+
+	/**
+	 * Generates the whole path now, or leaves it to be streamed if streaming generation is on. Call this at the end of
+	 * the constructor of paths that override generateNext().
+	 */
+	protected final void startGeneration() {
+		isGenerated = false;
+		if (!kinematics.isStreamingGeneration()) {
+			generateAll();
+		}
+	}
+
+	/**
+	 * Generates samples until the Trajectory reaches the given time, the path is fully generated or generation has
+	 * been cancelled.
+	 *
+	 * @param time the time in the path to generate up to
+	 */
+	public final synchronized void generateUntil(double time) {
+		Trajectory trajectory = getTrajectory();
+		while (!isGenerated && !isGenerationCancelled
+			&& (trajectory.isEmpty() || (trajectory.getEndTime() < time))) {
+			if (!generateNext()) {
+				isGenerated = true;
+			}
+		}
+	}
+
+	/**
+	 * Generates the rest of the path
+	 */
+	public final void generateAll() {
+		generateUntil(Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Stops any further samples from being generated. The Trajectory keeps the samples generated so far.
+	 */
+	public final void cancelGeneration() {
+		isGenerationCancelled = true;
+	}
+
+	/**
+	 * Finds where the robot should be at a time in the path, for example to resume a path part way through or to
+	 * preview a target pose. Streamed paths are generated up to the time first.
+	 *
+	 * @param time the time since the start of the path
+	 * @return a new PathData interpolated at that time
+	 * @see Trajectory#sampleAt(double)
+	 */
+	public final PathData sampleAt(double time) {
+		if (!isGenerated) {
+			generateUntil(time);
+		}
+		return getTrajectory().sampleAt(time);
+	}
+
+	/**
+	 * @return if generation was stopped before every sample was generated
+	 */
+	public final boolean isGenerationCancelled() {
+		return isGenerationCancelled;
+	}
+
+	/**
+	 * @return if every sample of the path has been generated
+	 */
+	public final boolean isGenerated() {
+		return isGenerated;
+	}
+
+	/**
+	 * The list is built from the Trajectory the first time this is called. Prefer getTrajectory(), which does not
+	 * create an object for every sample. Paths written before Trajectory can still override this instead of
+	 * getTrajectory().
+	 *
 	 * @return the path data for the whole path
 	 * @see PathData
 	 */
-	public abstract LinkedList<PathData> getPathData();
+	public synchronized LinkedList<PathData> getPathData() {
+		if (pathData == null) {
+			generateAll();
+			pathData = getTrajectory().toPathDataList();
+		}
+		return pathData;
+	}
 
 	/**
 	 * @return the velocity the robot should try to reach
@@ -136,11 +349,13 @@ public abstract class Path {
 	@Override
 	public String toString() {
 		return "Path{" +
-			"vCruise=" + vCruise +
+			"kinematics=" + kinematics +
+			", vCruise=" + vCruise +
 			", aMax=" + aMax +
 			", isBackwards=" + isBackwards +
 			", keyPoints=" + keyPoints +
 			", isFinished=" + isFinished +
+			", isGenerated=" + isGenerated +
 			'}';
 	}
 }
@@ -0,0 +1,122 @@
+package org.waltonrobotics.controller;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Gets the next path ready on a background thread while the robot is still following the current one, so the tick
+ * that switches paths does not have to generate it. A path is warmed by generating the rest of it, a chunk at a time
+ * so a tick that needs the path early never waits long for the lock, and then reading every sample once.
+ * <br>
+ * Asking for a path never blocks or allocates. Only the latest request is kept, so a request that comes in while
+ * another path is being warmed replaces any request still waiting.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+final class PathPrefetcher {
+
+	private final String name;
+	private final AtomicReference<Path> requested = new AtomicReference<>();
+	private volatile double chunkTime = 1;
+	private volatile long warmedCount;
+	private volatile Thread thread;
+	// Where the samples are summed so reading them is not optimized away
+	private volatile double touched;
+
+	/**
+	 * @param name - the name of the prefetch thread
+	 */
+	PathPrefetcher(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Asks for a path to be warmed. The thread is started the first time.
+	 *
+	 * @param path - the path to warm
+	 */
+	void prefetch(Path path) {
+		requested.set(path);
+		Thread thread = this.thread;
+		if (thread == null) {
+			thread = start();
+		}
+		LockSupport.unpark(thread);
+	}
+
+	private synchronized Thread start() {
+		if (thread == null) {
+			Thread thread = new Thread(new Worker(), name);
+			thread.setDaemon(true);
+			thread.setPriority(Thread.NORM_PRIORITY);
+			thread.start();
+			this.thread = thread;
+		}
+		return thread;
+	}
+
+	/**
+	 * @param chunkTime - how many seconds of the path to generate each time the lock on the path is taken
+	 */
+	void setChunkTime(double chunkTime) {
+		this.chunkTime = chunkTime;
+	}
+
+	/**
+	 * @return how many paths have been warmed
+	 */
+	long getWarmedCount() {
+		return warmedCount;
+	}
+
+	private void warm(Path path) {
+		double time = 0;
+		while (!path.isGenerated() && !path.isGenerationCancelled()) {
+			time += Math.max(chunkTime, 0.1);
+			path.generateUntil(time);
+		}
+
+		Trajectory trajectory = path.getTrajectory();
+		double sum = 0;
+		for (int i = 0; i < trajectory.size(); i++) {
+			sum += trajectory.getTime(i) + trajectory.getX(i) + trajectory.getY(i) + trajectory.getAngle(i)
+				+ trajectory.getLeftLength(i) + trajectory.getLeftVelocity(i) + trajectory.getLeftAcceleration(i)
+				+ trajectory.getRightLength(i) + trajectory.getRightVelocity(i) + trajectory.getRightAcceleration(i);
+		}
+		touched = sum;
+		warmedCount++;
+	}
+
+	@Override
+	public String toString() {
+		return "PathPrefetcher{" +
+			"name='" + name + '\'' +
+			", requested=" + requested.get() +
+			", chunkTime=" + chunkTime +
+			", warmedCount=" + warmedCount +
+			'}';
+	}
+
+	/**
+	 * Warms paths as they are asked for
+	 */
+	private final class Worker implements Runnable {
+
+		@Override
+		public void run() {
+			while (true) {
+				Path path = requested.getAndSet(null);
+				if (path == null) {
+					LockSupport.park(this);
+				} else {
+					try {
+						warm(path);
+					} catch (RuntimeException e) {
+						// The control thread generates whatever is left when it gets to the path
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,291 @@
+package org.waltonrobotics.controller;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The poses the odometry has calculated over the last capacity updates, so a measurement that was taken in the past,
+ * for example a vision target, can be compared with where the robot was at that time. Each sample holds a time, the
+ * pose and the wheel lengths, laid out in a double[] with the index constants of this class.
+ * <br>
+ * One thread adds samples and applies corrections. Any thread may look up samples. Looking up a sample is a binary
+ * search that does not allocate or lock, and it tries again if it overlaps a write.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public final class PoseHistory {
+
+	public static final int TIME = 0;
+	public static final int X = 1;
+	public static final int Y = 2;
+	public static final int ANGLE = 3;
+	public static final int LEFT_LENGTH = 4;
+	public static final int RIGHT_LENGTH = 5;
+	/**
+	 * The length of a sample
+	 */
+	public static final int SIZE = 6;
+	/**
+	 * About a second of samples at a 1 millisecond odometry period
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final int capacity;
+	private final double robotWidth;
+	private final AtomicLongArray samples;
+	// Odd while a write is in progress
+	private volatile long sequence;
+	// The number of samples ever added, the newest is count - 1
+	private volatile long count;
+	private final double[] replaySample = new double[SIZE];
+
+	/**
+	 * @param capacity - the number of samples to keep
+	 * @param robotWidth - the width of the robot from the outside of each wheel, used to replay corrections
+	 */
+	public PoseHistory(int capacity, double robotWidth) {
+		if (capacity < 2) {
+			throw new IllegalArgumentException("capacity must be at least 2");
+		}
+		this.capacity = capacity;
+		this.robotWidth = robotWidth;
+		samples = new AtomicLongArray(capacity * SIZE);
+	}
+
+	/**
+	 * @param robotWidth - the width of the robot from the outside of each wheel, used to replay corrections
+	 */
+	public PoseHistory(double robotWidth) {
+		this(DEFAULT_CAPACITY, robotWidth);
+	}
+
+	/**
+	 * Moves a pose along the arcs the wheels travelled since the wheel lengths in the sample, and stores the new
+	 * wheel lengths in it
+	 *
+	 * @param sample - the sample to update
+	 * @param leftLength - the new length of the left wheels
+	 * @param rightLength - the new length of the right wheels
+	 * @param robotWidth - the width of the robot from the outside of each wheel
+	 */
+	static void integrate(double[] sample, double leftLength, double rightLength, double robotWidth) {
+		double arcLeft = leftLength - sample[LEFT_LENGTH];
+		double arcRight = rightLength - sample[RIGHT_LENGTH];
+		double angle = sample[ANGLE];
+		double dAngle = (arcRight - arcLeft) / robotWidth;
+		double arcCenter = (arcRight + arcLeft) / 2;
+		double dX;
+		double dY;
+		if (Math.abs(dAngle) < 0.01) {
+			dX = arcCenter * StrictMath.cos(angle);
+			dY = arcCenter * StrictMath.sin(angle);
+		} else {
+			dX = arcCenter * (
+				((StrictMath.sin(dAngle) * StrictMath.cos(angle)) / dAngle)
+					- (
+					((StrictMath.cos(dAngle) - 1) * StrictMath.sin(angle))
+						/ dAngle));
+			dY = arcCenter * (
+				((StrictMath.sin(dAngle) * StrictMath.sin(angle)) / dAngle)
+					- (
+					((StrictMath.cos(dAngle) - 1) * StrictMath.cos(angle))
+						/ dAngle));
+		}
+
+		sample[X] += dX;
+		sample[Y] += dY;
+		sample[ANGLE] += dAngle;
+		sample[LEFT_LENGTH] = leftLength;
+		sample[RIGHT_LENGTH] = rightLength;
+	}
+
+	/**
+	 * Adds a sample, replacing the oldest one when full. Only one thread may write. Samples must be added in order of
+	 * time.
+	 *
+	 * @param sample - the sample to add
+	 */
+	public void add(double[] sample) {
+		long sequence = this.sequence;
+		this.sequence = sequence + 1;
+		long index = count;
+		for (int i = 0; i < SIZE; i++) {
+			set(index, i, sample[i]);
+		}
+		count = index + 1;
+		this.sequence = sequence + 2;
+	}
+
+	/**
+	 * Removes every sample. Only one thread may write.
+	 */
+	public void clear() {
+		long sequence = this.sequence;
+		this.sequence = sequence + 1;
+		count = 0;
+		this.sequence = sequence + 2;
+	}
+
+	/**
+	 * Changes where the robot was at a time, then moves every later sample along the same wheel arcs as before from
+	 * the corrected pose, so the newest sample becomes where the robot is now given the correction. Only one thread may
+	 * write. This takes time proportional to the number of later samples.
+	 *
+	 * @param time - when the robot was at the corrected pose
+	 * @param x - the corrected x
+	 * @param y - the corrected y
+	 * @param angle - the corrected angle in radians
+	 * @return false if the time is older than every sample, in which case nothing is changed
+	 */
+	public boolean correct(double time, double x, double y, double angle) {
+		long count = this.count;
+		long oldest = Math.max(0, count - capacity);
+		if ((count == 0) || (time < get(oldest, TIME))) {
+			return false;
+		}
+
+		long sequence = this.sequence;
+		this.sequence = sequence + 1;
+		long newest = count - 1;
+		long index = (time >= get(newest, TIME)) ? newest : findBefore(time, oldest, newest);
+		double fraction = (index == newest) ? 0 : getFraction(time, index);
+		replaySample[X] = x;
+		replaySample[Y] = y;
+		replaySample[ANGLE] = angle;
+		replaySample[LEFT_LENGTH] = interpolate(index, LEFT_LENGTH, fraction);
+		replaySample[RIGHT_LENGTH] = interpolate(index, RIGHT_LENGTH, fraction);
+		if ((index == newest) || (get(index, TIME) == time)) {
+			set(index, X, x);
+			set(index, Y, y);
+			set(index, ANGLE, angle);
+		}
+		for (long i = index + 1; i <= newest; i++) {
+			integrate(replaySample, get(i, LEFT_LENGTH), get(i, RIGHT_LENGTH), robotWidth);
+			set(i, X, replaySample[X]);
+			set(i, Y, replaySample[Y]);
+			set(i, ANGLE, replaySample[ANGLE]);
+		}
+		this.sequence = sequence + 2;
+		return true;
+	}
+
+	/**
+	 * Finds where the robot was at a time, interpolating between the samples on either side of it. A time after the
+	 * newest sample gives the newest sample. Any thread may call this.
+	 *
+	 * @param time - the time to look up
+	 * @param sample - where to put the sample
+	 * @return false if there are no samples or the time is older than every sample, in which case the sample is not
+	 * changed
+	 */
+	public boolean getSample(double time, double[] sample) {
+		while (true) {
+			long before = sequence;
+			if ((before & 1) == 0) {
+				boolean isFound = find(time, sample);
+				if (sequence == before) {
+					return isFound;
+				}
+			}
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Any thread may call this.
+	 *
+	 * @param sample - where to put the newest sample
+	 * @return false if there are no samples
+	 */
+	public boolean getNewestSample(double[] sample) {
+		return getSample(Double.POSITIVE_INFINITY, sample);
+	}
+
+	private boolean find(double time, double[] sample) {
+		long count = this.count;
+		long oldest = Math.max(0, count - capacity);
+		if ((count == 0) || (time < get(oldest, TIME))) {
+			return false;
+		}
+		long newest = count - 1;
+		if (time >= get(newest, TIME)) {
+			for (int i = 0; i < SIZE; i++) {
+				sample[i] = get(newest, i);
+			}
+			return true;
+		}
+
+		long index = findBefore(time, oldest, newest);
+		double fraction = getFraction(time, index);
+		for (int i = 0; i < SIZE; i++) {
+			sample[i] = interpolate(index, i, fraction);
+		}
+		sample[TIME] = time;
+		return true;
+	}
+
+	/**
+	 * @return the last sample between oldest and newest at or before the time
+	 */
+	private long findBefore(double time, long oldest, long newest) {
+		long low = oldest;
+		long high = newest;
+		while ((high - low) > 1) {
+			long middle = (low + high) >>> 1;
+			if (get(middle, TIME) <= time) {
+				low = middle;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @return how far the time is from the sample at index to the next sample, from 0 to 1
+	 */
+	private double getFraction(double time, long index) {
+		double before = get(index, TIME);
+		double after = get(index + 1, TIME);
+		if (after <= before) {
+			return 0;
+		}
+		return Math.max(0, Math.min(1, (time - before) / (after - before)));
+	}
+
+	private double interpolate(long index, int field, double fraction) {
+		double value = get(index, field);
+		if (fraction == 0) {
+			return value;
+		}
+		return value + (fraction * (get(index + 1, field) - value));
+	}
+
+	private double get(long index, int field) {
+		return Double.longBitsToDouble(samples.get((int) ((index % capacity) * SIZE) + field));
+	}
+
+	private void set(long index, int field, double value) {
+		samples.set((int) ((index % capacity) * SIZE) + field, Double.doubleToRawLongBits(value));
+	}
+
+	/**
+	 * @return the number of samples kept
+	 */
+	public int size() {
+		return (int) Math.min(count, capacity);
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	@Override
+	public String toString() {
+		return "PoseHistory{" +
+			"capacity=" + capacity +
+			", robotWidth=" + robotWidth +
+			", size=" + size() +
+			", count=" + count +
+			'}';
+	}
+}
@@ -7,6 +7,17 @@ package org.waltonrobotics.controller;
  */
 public class RobotPair {
 
+	/**
+	 * Indices of the values in the arrays that hold a RobotPair without allocating one
+	 */
+	public static final int LEFT = 0;
+	public static final int RIGHT = 1;
+	public static final int TIME = 2;
+	/**
+	 * The size of an array that holds one RobotPair
+	 */
+	public static final int SIZE = 3;
+
 	private final double left;
 	private final double right;
 	private final double time;
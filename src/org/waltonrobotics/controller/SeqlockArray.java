@@ -0,0 +1,81 @@
+package org.waltonrobotics.controller;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hands an array of doubles from one thread to others so a reader always gets values from the same write. The writer
+ * never waits. A reader that overlaps a write tries again, which is cheap because a write is only a few stores. Neither
+ * side allocates.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+final class SeqlockArray {
+
+	private final AtomicLongArray values;
+	// Odd while a write is in progress
+	private volatile long sequence;
+
+	/**
+	 * @param size - the number of values handed over
+	 */
+	SeqlockArray(int size) {
+		values = new AtomicLongArray(size);
+	}
+
+	/**
+	 * Replaces the values. Only one thread may write.
+	 *
+	 * @param values - the new values, at least size long
+	 */
+	void write(double[] values) {
+		long sequence = this.sequence;
+		this.sequence = sequence + 1;
+		for (int i = 0; i < this.values.length(); i++) {
+			this.values.set(i, Double.doubleToRawLongBits(values[i]));
+		}
+		this.sequence = sequence + 2;
+	}
+
+	/**
+	 * Copies the values of the latest write
+	 *
+	 * @param values - where to copy the values, at least size long
+	 * @return the version of the values, which goes up with every write and is 0 before the first
+	 */
+	long read(double[] values) {
+		while (true) {
+			long before = sequence;
+			if ((before & 1) == 0) {
+				for (int i = 0; i < this.values.length(); i++) {
+					values[i] = Double.longBitsToDouble(this.values.get(i));
+				}
+				if (sequence == before) {
+					return before / 2;
+				}
+			}
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * @return the version of the latest write, 0 before the first
+	 */
+	long getVersion() {
+		return sequence / 2;
+	}
+
+	/**
+	 * @return the number of values handed over
+	 */
+	int size() {
+		return values.length();
+	}
+
+	@Override
+	public String toString() {
+		return "SeqlockArray{" +
+			"size=" + values.length() +
+			", sequence=" + sequence +
+			'}';
+	}
+}
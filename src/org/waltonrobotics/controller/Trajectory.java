@@ -0,0 +1,425 @@
+package org.waltonrobotics.controller;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
+/**
+ * Holds the samples of a Path in parallel primitive columns instead of one PathData object per sample. Samples are
+ * appended by the path generators and read by index by the MotionController. There can be one thread adding samples
+ * while others read them, as long as readers only read indices below size().
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public class Trajectory {
+
+	/**
+	 * Indices of the values of a sample in the arrays filled by getSample and sampleAt
+	 */
+	public static final int TIME = 0;
+	public static final int X = 1;
+	public static final int Y = 2;
+	public static final int ANGLE = 3;
+	public static final int LEFT_LENGTH = 4;
+	public static final int LEFT_VELOCITY = 5;
+	public static final int LEFT_ACCELERATION = 6;
+	public static final int RIGHT_LENGTH = 7;
+	public static final int RIGHT_VELOCITY = 8;
+	public static final int RIGHT_ACCELERATION = 9;
+	/**
+	 * The size of an array that holds one sample
+	 */
+	public static final int SAMPLE_SIZE = 10;
+
+	private static final int DEFAULT_CAPACITY = 64;
+	private static final double UNIFORM_TOLERANCE = 1.0e-9;
+
+	private final boolean isBackwards;
+	private double[] time;
+	private double[] x;
+	private double[] y;
+	private double[] angle;
+	private double[] leftLength;
+	private double[] leftVelocity;
+	private double[] leftAcceleration;
+	private double[] rightLength;
+	private double[] rightVelocity;
+	private double[] rightAcceleration;
+	private volatile int size;
+	private boolean isReadOnly;
+	private double timeStep = Double.NaN;
+	private boolean isUniform = true;
+
+	/**
+	 * @param capacity the number of samples to allocate room for
+	 * @param isBackwards if the robot is travelling forwards or backwards
+	 */
+	public Trajectory(int capacity, boolean isBackwards) {
+		this.isBackwards = isBackwards;
+		capacity = Math.max(capacity, 1);
+		time = new double[capacity];
+		x = new double[capacity];
+		y = new double[capacity];
+		angle = new double[capacity];
+		leftLength = new double[capacity];
+		leftVelocity = new double[capacity];
+		leftAcceleration = new double[capacity];
+		rightLength = new double[capacity];
+		rightVelocity = new double[capacity];
+		rightAcceleration = new double[capacity];
+		size = 0;
+	}
+
+	public Trajectory(boolean isBackwards) {
+		this(DEFAULT_CAPACITY, isBackwards);
+	}
+
+	/**
+	 * Adds a sample to the end of the trajectory
+	 *
+	 * @param time the instance in time of the sample
+	 * @param x the x coordinate of the center of the robot
+	 * @param y the y coordinate of the center of the robot
+	 * @param angle the angle of the robot in radians
+	 * @param leftLength the length the left wheels have travelled
+	 * @param leftVelocity the velocity of the left wheels
+	 * @param leftAcceleration the acceleration of the left wheels
+	 * @param rightLength the length the right wheels have travelled
+	 * @param rightVelocity the velocity of the right wheels
+	 * @param rightAcceleration the acceleration of the right wheels
+	 */
+	public final void add(double time, double x, double y, double angle,
+		double leftLength, double leftVelocity, double leftAcceleration,
+		double rightLength, double rightVelocity, double rightAcceleration) {
+		if (isReadOnly) {
+			throw new IllegalStateException("Cannot add samples to a read only Trajectory");
+		}
+		ensureCapacity(size + 1);
+		int i = size;
+		if (i == 1) {
+			timeStep = time - this.time[0];
+			isUniform = timeStep > 0;
+		} else if ((i > 1) && isUniform) {
+			isUniform = isSameTimeStep(time - this.time[i - 1], timeStep);
+		}
+		this.time[i] = time;
+		this.x[i] = x;
+		this.y[i] = y;
+		this.angle[i] = angle;
+		this.leftLength[i] = leftLength;
+		this.leftVelocity[i] = leftVelocity;
+		this.leftAcceleration[i] = leftAcceleration;
+		this.rightLength[i] = rightLength;
+		this.rightVelocity[i] = rightVelocity;
+		this.rightAcceleration[i] = rightAcceleration;
+		size = i + 1;
+	}
+
+	/**
+	 * Adds a PathData sample to the end of the trajectory
+	 */
+	public final void add(PathData data) {
+		State left = data.getLeftState();
+		State right = data.getRightState();
+		Pose center = data.getCenterPose();
+		add(data.getTime(), center.getX(), center.getY(), center.getAngle(),
+			left.getLength(), left.getVelocity(), left.getAcceleration(),
+			right.getLength(), right.getVelocity(), right.getAcceleration());
+	}
+
+	/**
+	 * Copies every sample of another trajectory to the end of this one
+	 */
+	public final void addAll(Trajectory other) {
+		int count = other.size();
+		ensureCapacity(size + count);
+		for (int i = 0; i < count; i++) {
+			add(other.getTime(i), other.getX(i), other.getY(i), other.getAngle(i),
+				other.getLeftLength(i), other.getLeftVelocity(i), other.getLeftAcceleration(i),
+				other.getRightLength(i), other.getRightVelocity(i), other.getRightAcceleration(i));
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > time.length) {
+			int newCapacity = Math.max(capacity, time.length * 2);
+			time = Arrays.copyOf(time, newCapacity);
+			x = Arrays.copyOf(x, newCapacity);
+			y = Arrays.copyOf(y, newCapacity);
+			angle = Arrays.copyOf(angle, newCapacity);
+			leftLength = Arrays.copyOf(leftLength, newCapacity);
+			leftVelocity = Arrays.copyOf(leftVelocity, newCapacity);
+			leftAcceleration = Arrays.copyOf(leftAcceleration, newCapacity);
+			rightLength = Arrays.copyOf(rightLength, newCapacity);
+			rightVelocity = Arrays.copyOf(rightVelocity, newCapacity);
+			rightAcceleration = Arrays.copyOf(rightAcceleration, newCapacity);
+		}
+	}
+
+	/**
+	 * @return the number of samples in the trajectory
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return if the trajectory has no samples
+	 */
+	public final boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Stops any more samples from being added. Do this before sharing the Trajectory between paths.
+	 */
+	public final void makeReadOnly() {
+		isReadOnly = true;
+	}
+
+	/**
+	 * @return if samples can no longer be added
+	 */
+	public final boolean isReadOnly() {
+		return isReadOnly;
+	}
+
+	/**
+	 * @return if the robot is travelling forwards or backwards
+	 */
+	public final boolean isBackwards() {
+		return isBackwards;
+	}
+
+	public double getTime(int index) {
+		return time[index];
+	}
+
+	public double getX(int index) {
+		return x[index];
+	}
+
+	public double getY(int index) {
+		return y[index];
+	}
+
+	/**
+	 * @return the angle of the sample in radians
+	 */
+	public double getAngle(int index) {
+		return angle[index];
+	}
+
+	public double getLeftLength(int index) {
+		return leftLength[index];
+	}
+
+	public double getLeftVelocity(int index) {
+		return leftVelocity[index];
+	}
+
+	public double getLeftAcceleration(int index) {
+		return leftAcceleration[index];
+	}
+
+	public double getRightLength(int index) {
+		return rightLength[index];
+	}
+
+	public double getRightVelocity(int index) {
+		return rightVelocity[index];
+	}
+
+	public double getRightAcceleration(int index) {
+		return rightAcceleration[index];
+	}
+
+	/**
+	 * @return the average length of the left and right sides at the sample
+	 */
+	public final double getLCenter(int index) {
+		return (getLeftLength(index) + getRightLength(index)) / 2.0;
+	}
+
+	/**
+	 * @return the time between samples if every sample is evenly spaced in time, NaN otherwise
+	 */
+	public double getUniformTimeStep() {
+		return (isUniform && (size() > 1)) ? timeStep : Double.NaN;
+	}
+
+	/**
+	 * @return if two time steps are close enough to count as the same
+	 */
+	protected static boolean isSameTimeStep(double timeStep, double otherTimeStep) {
+		return Math.abs(timeStep - otherTimeStep) <= (UNIFORM_TOLERANCE * Math.max(1.0, Math.abs(otherTimeStep)));
+	}
+
+	/**
+	 * Finds the first sample at or after a time. This is O(1) if the samples are evenly spaced in time and O(log n)
+	 * otherwise.
+	 *
+	 * @param time the time to look for
+	 * @return the index of the first sample at or after the time, or size() if the time is after every sample
+	 */
+	public final int indexAfter(double time) {
+		int size = size();
+		if (size == 0) {
+			return 0;
+		}
+
+		double timeStep = getUniformTimeStep();
+		if (!Double.isNaN(timeStep)) {
+			double index = Math.ceil((time - getTime(0)) / timeStep);
+			int guess = (int) Math.max(0, Math.min(size, index));
+			// Correct for rounding in the division
+			while ((guess > 0) && (getTime(guess - 1) >= time)) {
+				guess--;
+			}
+			while ((guess < size) && (getTime(guess) < time)) {
+				guess++;
+			}
+			return guess;
+		}
+
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (getTime(middle) < time) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Interpolates between the samples around a time. Lengths and the center pose are interpolated, velocities and
+	 * accelerations are those of the following sample. Past the last sample, the last sample is returned.
+	 *
+	 * @param time the time to sample at
+	 * @return a new PathData at that time
+	 */
+	public final PathData sampleAt(double time) {
+		double[] sample = new double[SAMPLE_SIZE];
+		sampleAt(time, sample);
+		return toPathData(sample);
+	}
+
+	/**
+	 * Like sampleAt(double), but fills an array instead of making a PathData so it does not allocate
+	 *
+	 * @param time the time to sample at
+	 * @param sample the array of at least SAMPLE_SIZE to fill, indexed by TIME, X, Y, ANGLE and the rest
+	 */
+	public final void sampleAt(double time, double[] sample) {
+		int size = size();
+		if (size < 2) {
+			getSample(0, sample);
+			return;
+		}
+		int next = Math.max(1, indexAfter(time));
+		if (next >= size) {
+			getSample(size - 1, sample);
+			return;
+		}
+		int previous = next - 1;
+
+		double timePrevious = getTime(previous);
+		double timeNext = getTime(next);
+		double dTime = timeNext - timePrevious;
+		double rctn = (timeNext - time) / dTime; // Ratio of the current time to the next pose time
+		double rltc = (time - timePrevious) / dTime; // Ratio of the previous time to the current pose time
+
+		sample[TIME] = time;
+		sample[LEFT_LENGTH] = (getLeftLength(previous) * rctn) + (getLeftLength(next) * rltc);
+		sample[LEFT_VELOCITY] = getLeftVelocity(next);
+		sample[LEFT_ACCELERATION] = getLeftAcceleration(next);
+		sample[RIGHT_LENGTH] = (getRightLength(previous) * rctn) + (getRightLength(next) * rltc);
+		sample[RIGHT_VELOCITY] = getRightVelocity(next);
+		sample[RIGHT_ACCELERATION] = getRightAcceleration(next);
+
+		// Current pose is made from the weighted average of the x, y, and angle values
+		sample[X] = (getX(previous) * rctn) + (getX(next) * rltc);
+		sample[Y] = (getY(previous) * rctn) + (getY(next) * rltc);
+		sample[ANGLE] = (getAngle(previous) * rctn) + (getAngle(next) * rltc);
+	}
+
+	/**
+	 * Copies a sample into an array without allocating
+	 *
+	 * @param index the index of the sample
+	 * @param sample the array of at least SAMPLE_SIZE to fill, indexed by TIME, X, Y, ANGLE and the rest
+	 */
+	public final void getSample(int index, double[] sample) {
+		sample[TIME] = getTime(index);
+		sample[X] = getX(index);
+		sample[Y] = getY(index);
+		sample[ANGLE] = getAngle(index);
+		sample[LEFT_LENGTH] = getLeftLength(index);
+		sample[LEFT_VELOCITY] = getLeftVelocity(index);
+		sample[LEFT_ACCELERATION] = getLeftAcceleration(index);
+		sample[RIGHT_LENGTH] = getRightLength(index);
+		sample[RIGHT_VELOCITY] = getRightVelocity(index);
+		sample[RIGHT_ACCELERATION] = getRightAcceleration(index);
+	}
+
+	/**
+	 * @return a new PathData with the values of a sample array
+	 */
+	private PathData toPathData(double[] sample) {
+		return new PathData(
+			new State(sample[LEFT_LENGTH], sample[LEFT_VELOCITY], sample[LEFT_ACCELERATION]),
+			new State(sample[RIGHT_LENGTH], sample[RIGHT_VELOCITY], sample[RIGHT_ACCELERATION]),
+			new Pose(sample[X], sample[Y], sample[ANGLE]), sample[TIME], isBackwards);
+	}
+
+	/**
+	 * @return the time of the first sample
+	 */
+	public final double getStartTime() {
+		return getTime(0);
+	}
+
+	/**
+	 * @return the time of the last sample
+	 */
+	public final double getEndTime() {
+		return getTime(size() - 1);
+	}
+
+	/**
+	 * Creates a PathData from a sample. This allocates, so do not use it in the control loop.
+	 *
+	 * @param index the index of the sample
+	 * @return a new PathData holding the sample
+	 */
+	public final PathData getPathData(int index) {
+		return new PathData(
+			new State(getLeftLength(index), getLeftVelocity(index), getLeftAcceleration(index)),
+			new State(getRightLength(index), getRightVelocity(index), getRightAcceleration(index)),
+			new Pose(getX(index), getY(index), getAngle(index)),
+			getTime(index), isBackwards);
+	}
+
+	/**
+	 * @return a new list with a PathData for every sample
+	 */
+	public final LinkedList<PathData> toPathDataList() {
+		LinkedList<PathData> pathData = new LinkedList<>();
+		for (int i = 0; i < size(); i++) {
+			pathData.add(getPathData(i));
+		}
+		return pathData;
+	}
+
+	@Override
+	public String toString() {
+		return "Trajectory{" +
+			"isBackwards=" + isBackwards +
+			", size=" + size() +
+			", isReadOnly=" + isReadOnly +
+			'}';
+	}
+}
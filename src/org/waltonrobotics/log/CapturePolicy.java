@@ -0,0 +1,186 @@
+package org.waltonrobotics.log;
+
+/**
+ * Which ticks the MotionLogger keeps. In steady state only every decimation-th tick is kept. When a trigger fires,
+ * every tick is kept from preTriggerTicks before it until postTriggerTicks after it, so the log has full rate data
+ * around anything interesting. A trigger is an error above its threshold, a change of motion state or the start of a
+ * new path. It never changes, so it can be shared between loggers.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public final class CapturePolicy {
+
+	/**
+	 * Keeps every tick, which is what the MotionLogger does unless changed
+	 */
+	public static final CapturePolicy EVERY_TICK = new CapturePolicy(1, 0, 0);
+
+	private final int decimation;
+	private final int preTriggerTicks;
+	private final int postTriggerTicks;
+	private final double maxCrossTrackError;
+	private final double maxLagError;
+	private final double maxAngleError;
+	private final boolean isStateChangeTrigger;
+	private final boolean isPathChangeTrigger;
+
+	/**
+	 * @param decimation - keep one out of this many ticks in steady state, 1 keeps every tick
+	 * @param preTriggerTicks - the number of ticks before a trigger to keep
+	 * @param postTriggerTicks - the number of ticks after a trigger to keep
+	 * @param maxCrossTrackError - a cross track error further from 0 than this is a trigger, Double.POSITIVE_INFINITY
+	 * for never
+	 * @param maxLagError - a lag error further from 0 than this is a trigger, Double.POSITIVE_INFINITY for never
+	 * @param maxAngleError - an angle error further from 0 than this is a trigger, Double.POSITIVE_INFINITY for never
+	 * @param isStateChangeTrigger - if a change of motion state is a trigger
+	 * @param isPathChangeTrigger - if the start of a new path is a trigger
+	 */
+	public CapturePolicy(int decimation, int preTriggerTicks, int postTriggerTicks, double maxCrossTrackError,
+		double maxLagError, double maxAngleError, boolean isStateChangeTrigger, boolean isPathChangeTrigger) {
+		if (decimation < 1) {
+			throw new IllegalArgumentException("decimation must be at least 1");
+		}
+		if ((preTriggerTicks < 0) || (postTriggerTicks < 0)) {
+			throw new IllegalArgumentException("preTriggerTicks and postTriggerTicks must not be negative");
+		}
+		if (!(maxCrossTrackError >= 0) || !(maxLagError >= 0) || !(maxAngleError >= 0)) {
+			throw new IllegalArgumentException("The error thresholds must not be negative");
+		}
+		this.decimation = decimation;
+		this.preTriggerTicks = preTriggerTicks;
+		this.postTriggerTicks = postTriggerTicks;
+		this.maxCrossTrackError = maxCrossTrackError;
+		this.maxLagError = maxLagError;
+		this.maxAngleError = maxAngleError;
+		this.isStateChangeTrigger = isStateChangeTrigger;
+		this.isPathChangeTrigger = isPathChangeTrigger;
+	}
+
+	/**
+	 * Only motion state changes and new paths are triggers
+	 *
+	 * @param decimation - keep one out of this many ticks in steady state, 1 keeps every tick
+	 * @param preTriggerTicks - the number of ticks before a trigger to keep
+	 * @param postTriggerTicks - the number of ticks after a trigger to keep
+	 */
+	public CapturePolicy(int decimation, int preTriggerTicks, int postTriggerTicks) {
+		this(decimation, preTriggerTicks, postTriggerTicks, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+			Double.POSITIVE_INFINITY, true, true);
+	}
+
+	/**
+	 * @return if the errors of a tick are a trigger
+	 */
+	public boolean isErrorTrigger(double crossTrackError, double lagError, double angleError) {
+		return (Math.abs(crossTrackError) > maxCrossTrackError) || (Math.abs(lagError) > maxLagError)
+			|| (Math.abs(angleError) > maxAngleError);
+	}
+
+	public int getDecimation() {
+		return decimation;
+	}
+
+	public int getPreTriggerTicks() {
+		return preTriggerTicks;
+	}
+
+	public int getPostTriggerTicks() {
+		return postTriggerTicks;
+	}
+
+	public double getMaxCrossTrackError() {
+		return maxCrossTrackError;
+	}
+
+	public double getMaxLagError() {
+		return maxLagError;
+	}
+
+	public double getMaxAngleError() {
+		return maxAngleError;
+	}
+
+	public boolean isStateChangeTrigger() {
+		return isStateChangeTrigger;
+	}
+
+	public boolean isPathChangeTrigger() {
+		return isPathChangeTrigger;
+	}
+
+	/**
+	 * @return a copy with a different decimation
+	 */
+	public CapturePolicy withDecimation(int decimation) {
+		return new CapturePolicy(decimation, preTriggerTicks, postTriggerTicks, maxCrossTrackError, maxLagError,
+			maxAngleError, isStateChangeTrigger, isPathChangeTrigger);
+	}
+
+	/**
+	 * @return a copy with a different window around triggers
+	 */
+	public CapturePolicy withTriggerWindow(int preTriggerTicks, int postTriggerTicks) {
+		return new CapturePolicy(decimation, preTriggerTicks, postTriggerTicks, maxCrossTrackError, maxLagError,
+			maxAngleError, isStateChangeTrigger, isPathChangeTrigger);
+	}
+
+	/**
+	 * @return a copy with different error thresholds
+	 */
+	public CapturePolicy withErrorThresholds(double maxCrossTrackError, double maxLagError, double maxAngleError) {
+		return new CapturePolicy(decimation, preTriggerTicks, postTriggerTicks, maxCrossTrackError, maxLagError,
+			maxAngleError, isStateChangeTrigger, isPathChangeTrigger);
+	}
+
+	/**
+	 * @return a copy with motion state change and new path triggers on or off
+	 */
+	public CapturePolicy withChangeTriggers(boolean isStateChangeTrigger, boolean isPathChangeTrigger) {
+		return new CapturePolicy(decimation, preTriggerTicks, postTriggerTicks, maxCrossTrackError, maxLagError,
+			maxAngleError, isStateChangeTrigger, isPathChangeTrigger);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof CapturePolicy)) {
+			return false;
+		}
+		CapturePolicy that = (CapturePolicy) o;
+		return (decimation == that.decimation) && (preTriggerTicks == that.preTriggerTicks)
+			&& (postTriggerTicks == that.postTriggerTicks)
+			&& (Double.compare(that.maxCrossTrackError, maxCrossTrackError) == 0)
+			&& (Double.compare(that.maxLagError, maxLagError) == 0)
+			&& (Double.compare(that.maxAngleError, maxAngleError) == 0)
+			&& (isStateChangeTrigger == that.isStateChangeTrigger) && (isPathChangeTrigger == that.isPathChangeTrigger);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = decimation;
+		result = (31 * result) + preTriggerTicks;
+		result = (31 * result) + postTriggerTicks;
+		result = (31 * result) + Double.hashCode(maxCrossTrackError);
+		result = (31 * result) + Double.hashCode(maxLagError);
+		result = (31 * result) + Double.hashCode(maxAngleError);
+		result = (31 * result) + (isStateChangeTrigger ? 1 : 0);
+		result = (31 * result) + (isPathChangeTrigger ? 1 : 0);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "CapturePolicy{" +
+			"decimation=" + decimation +
+			", preTriggerTicks=" + preTriggerTicks +
+			", postTriggerTicks=" + postTriggerTicks +
+			", maxCrossTrackError=" + maxCrossTrackError +
+			", maxLagError=" + maxLagError +
+			", maxAngleError=" + maxAngleError +
+			", isStateChangeTrigger=" + isStateChangeTrigger +
+			", isPathChangeTrigger=" + isPathChangeTrigger +
+			'}';
+	}
+}
@@ -0,0 +1,108 @@
+package org.waltonrobotics.log;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes numbers as ASCII straight into a ByteBuffer without allocating. Doubles are written with a fixed number of
+ * digits after the decimal point, rounded half away from zero, which is much faster than finding the shortest
+ * representation like Double.toString does. NaN, the infinities and numbers too big for a long fall back to
+ * Double.toString.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public final class DecimalFormatter {
+
+	/**
+	 * The most digits after the decimal point
+	 */
+	public static final int MAX_DIGITS = 9;
+	/**
+	 * The most bytes a single number can take, so make sure the buffer has this much room
+	 */
+	public static final int MAX_SIZE = 32;
+
+	private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L,
+		100000000L, 1000000000L, 10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L,
+		1000000000000000L, 10000000000000000L, 100000000000000000L, 1000000000000000000L};
+	// Below Long.MAX_VALUE with room for rounding
+	private static final double MAX_SCALED = 9.0E18;
+
+	private DecimalFormatter() {
+	}
+
+	/**
+	 * @param buffer - where to put the number
+	 * @param value - the number
+	 * @param digits - the number of digits after the decimal point, from 0 to MAX_DIGITS
+	 */
+	public static void putDouble(ByteBuffer buffer, double value, int digits) {
+		if ((digits < 0) || (digits > MAX_DIGITS)) {
+			throw new IllegalArgumentException("digits must be between 0 and " + MAX_DIGITS);
+		}
+		double scaled = Math.abs(value) * POWERS_OF_TEN[digits];
+		// Also true for NaN
+		if (!(scaled < MAX_SCALED)) {
+			putAscii(buffer, Double.toString(value));
+			return;
+		}
+
+		long units = Math.round(scaled);
+		// Numbers that round to 0 are written without a sign
+		if ((units != 0) && (value < 0)) {
+			buffer.put((byte) '-');
+		}
+		long power = POWERS_OF_TEN[digits];
+		long integer = units / power;
+		putUnsigned(buffer, integer, getDigitCount(integer));
+		if (digits > 0) {
+			buffer.put((byte) '.');
+			putUnsigned(buffer, units - (integer * power), digits);
+		}
+	}
+
+	/**
+	 * @param buffer - where to put the number
+	 * @param value - the number
+	 */
+	public static void putLong(ByteBuffer buffer, long value) {
+		if (value == Long.MIN_VALUE) {
+			putAscii(buffer, Long.toString(value));
+			return;
+		}
+		if (value < 0) {
+			buffer.put((byte) '-');
+			value = -value;
+		}
+		putUnsigned(buffer, value, getDigitCount(value));
+	}
+
+	/**
+	 * @param buffer - where to put the text
+	 * @param text - text that is all ASCII
+	 */
+	public static void putAscii(ByteBuffer buffer, CharSequence text) {
+		for (int i = 0; i < text.length(); i++) {
+			buffer.put((byte) text.charAt(i));
+		}
+	}
+
+	/**
+	 * Puts a positive number padded with zeros in front to the given number of digits
+	 */
+	private static void putUnsigned(ByteBuffer buffer, long value, int digitCount) {
+		int start = buffer.position();
+		for (int i = digitCount - 1; i >= 0; i--) {
+			buffer.put(start + i, (byte) ('0' + (value % 10)));
+			value /= 10;
+		}
+		buffer.position(start + digitCount);
+	}
+
+	private static int getDigitCount(long value) {
+		int digitCount = 1;
+		while ((digitCount < POWERS_OF_TEN.length) && (value >= POWERS_OF_TEN[digitCount])) {
+			digitCount++;
+		}
+		return digitCount;
+	}
+}
@@ -0,0 +1,304 @@
+package org.waltonrobotics.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.waltonrobotics.controller.MotionState;
+
+/**
+ * A motion log that survives crashes. The file is made at its full size and memory mapped, and every tick is stored
+ * straight into the mapping, so appending is only memory stores with no system calls. The file is filled with zeros and
+ * every page of the mapping is touched before the constructor returns, so the first tick stored in a page does not
+ * take a page fault or wait for the file system to allocate the page. The operating system writes the dirty pages to
+ * the file even if the JVM is killed. Call force() to make sure they are on the disk, for example in disabledInit(),
+ * since a brown out can still lose the pages the operating system has not written yet.
+ * <br>
+ * The file is used as a ring of slots, so it always holds the latest capacity ticks. Each slot is the sequence number
+ * of the tick (long), the record in the MotionLogFile format, then a commit marker (int) that is a checksum of the
+ * sequence number and record. The marker is stored last, so a slot that was cut short by a crash does not match its
+ * marker and is left out by MotionLogRecovery.
+ * <br>
+ * A file that is already there when the log is made is the log of the last run, which may have crashed, so it is
+ * renamed with the time it was last written added to its name, for example "motion 2026-10-16 21-39-37.wrmap", before
+ * the new file is made. If a file with that name is already there, a number is added as well, so no log is replaced.
+ * Recover it with MotionLogRecovery. Rotated logs are kept at their full size, so only the latest few are kept and
+ * older ones are deleted when the next file is made, so restarting the robot code does not fill the flash.
+ * <br>
+ * The file is big endian and laid out as:
+ * <ul>
+ * <li>header: magic (int), version (int), capacity (int), data offset (int)</li>
+ * <li>the header of a MotionLogFile, with the schema, motion states and metadata</li>
+ * <li>padding up to the data offset, which is a multiple of 8</li>
+ * <li>capacity slots</li>
+ * </ul>
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public final class MappedMotionLog {
+
+	/**
+	 * "WRMM" in ASCII
+	 */
+	public static final int MAGIC = 0x57524D4D;
+	public static final int VERSION = 1;
+	public static final String EXTENSION = ".wrmap";
+	/**
+	 * The number of logs of past runs to keep unless changed
+	 */
+	public static final int DEFAULT_KEPT_LOG_COUNT = 3;
+	static final int HEADER_SIZE = 4 * Integer.BYTES;
+	static final int SEQUENCE_SIZE = Long.BYTES;
+	static final int SLOT_SIZE = SEQUENCE_SIZE + MotionLogFile.RECORD_SIZE + Integer.BYTES;
+	// The maximum size of the MotionLogFile header
+	private static final int MAX_LOG_HEADER_SIZE = 64 * 1024;
+	// Smaller than any page size, so touching every PAGE_SIZE bytes touches every page
+	private static final int PAGE_SIZE = 4096;
+	private static final int FILL_SIZE = 64 * 1024;
+
+	private final File file;
+	private final int capacity;
+	private final int keptLogCount;
+	private final int dataOffset;
+	private final MappedByteBuffer buffer;
+	private volatile long appendedCount;
+
+	/**
+	 * Makes the file at its full size, after renaming any file that is there so it can still be recovered and deleting
+	 * the oldest logs of past runs
+	 *
+	 * @param file - where to keep the log, on the roboRIO use a file under "/home/lvuser/"
+	 * @param capacity - the number of ticks to keep, 30000 is a whole match at the 5 ms controller period
+	 * @param metadata - information about the robot to keep with the log, for example MotionLogger.getMetadata()
+	 * @param keptLogCount - the number of logs of past runs to keep, each the size of this one
+	 * @throws IOException if the file could not be made
+	 */
+	public MappedMotionLog(File file, int capacity, Map<String, String> metadata, int keptLogCount)
+		throws IOException {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be greater than 0");
+		}
+		if (keptLogCount < 0) {
+			throw new IllegalArgumentException("keptLogCount must not be negative");
+		}
+		this.file = file;
+		this.capacity = capacity;
+		this.keptLogCount = keptLogCount;
+
+		ByteBuffer logHeader = ByteBuffer.allocate(MAX_LOG_HEADER_SIZE);
+		MotionLogFile.putHeader(logHeader, metadata);
+		logHeader.flip();
+		dataOffset = align(HEADER_SIZE + logHeader.remaining());
+
+		rotate(file, keptLogCount);
+		long size = dataOffset + ((long) capacity * SLOT_SIZE);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+			StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			fill(channel, size);
+			buffer = channel.map(MapMode.READ_WRITE, 0, size);
+		}
+		for (int i = 0; i < buffer.capacity(); i += PAGE_SIZE) {
+			buffer.put(i, (byte) 0);
+		}
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(capacity);
+		buffer.putInt(dataOffset);
+		buffer.put(logHeader);
+		buffer.force();
+	}
+
+	/**
+	 * Makes the file at its full size, after renaming any file that is there so it can still be recovered and deleting
+	 * all but the last DEFAULT_KEPT_LOG_COUNT logs of past runs
+	 *
+	 * @param file - where to keep the log, on the roboRIO use a file under "/home/lvuser/"
+	 * @param capacity - the number of ticks to keep, 30000 is a whole match at the 5 ms controller period
+	 * @param metadata - information about the robot to keep with the log, for example MotionLogger.getMetadata()
+	 * @throws IOException if the file could not be made
+	 */
+	public MappedMotionLog(File file, int capacity, Map<String, String> metadata) throws IOException {
+		this(file, capacity, metadata, DEFAULT_KEPT_LOG_COUNT);
+	}
+
+	/**
+	 * Makes the file at its full size, after renaming any file that is there so it can still be recovered and deleting
+	 * all but the last DEFAULT_KEPT_LOG_COUNT logs of past runs
+	 *
+	 * @param file - where to keep the log, on the roboRIO use a file under "/home/lvuser/"
+	 * @param capacity - the number of ticks to keep, 30000 is a whole match at the 5 ms controller period
+	 * @throws IOException if the file could not be made
+	 */
+	public MappedMotionLog(File file, int capacity) throws IOException {
+		this(file, capacity, Collections.<String, String>emptyMap());
+	}
+
+	/**
+	 * Writes zeros to the whole file, so the file system allocates every block of it now instead of when a tick is
+	 * first stored in it
+	 */
+	private static void fill(FileChannel channel, long size) throws IOException {
+		ByteBuffer zeros = ByteBuffer.allocateDirect(FILL_SIZE);
+		long position = 0;
+		while (position < size) {
+			zeros.clear();
+			zeros.limit((int) Math.min(FILL_SIZE, size - position));
+			while (zeros.hasRemaining()) {
+				position += channel.write(zeros, position);
+			}
+		}
+	}
+
+	/**
+	 * Renames the log of the last run, if there is one, so making the new file does not replace it, then deletes the
+	 * oldest rotated logs until keptLogCount are left
+	 */
+	private static void rotate(File file, int keptLogCount) throws IOException {
+		if (file.length() > 0) {
+			Files.move(file.toPath(), getRotatedFile(file).toPath());
+		}
+		List<File> rotatedFiles = getRotatedFiles(file);
+		for (int i = 0; i < (rotatedFiles.size() - keptLogCount); i++) {
+			Files.deleteIfExists(rotatedFiles.get(i).toPath());
+		}
+	}
+
+	/**
+	 * @param file - a mapped motion log
+	 * @return the rotated logs of the file, oldest first
+	 */
+	static List<File> getRotatedFiles(File file) {
+		String name = file.getName();
+		String extension = "";
+		if (name.endsWith(EXTENSION)) {
+			name = name.substring(0, name.length() - EXTENSION.length());
+			extension = EXTENSION;
+		}
+		Pattern rotatedName = Pattern.compile(Pattern.quote(name + ' ')
+			+ "\\d{4}-\\d{2}-\\d{2} \\d{2}-\\d{2}-\\d{2}( \\d+)?" + Pattern.quote(extension));
+		File[] files = file.getAbsoluteFile().getParentFile().listFiles();
+		List<File> rotatedFiles = new ArrayList<>();
+		if (files != null) {
+			for (File candidate : files) {
+				if (rotatedName.matcher(candidate.getName()).matches()) {
+					rotatedFiles.add(candidate);
+				}
+			}
+		}
+		// Renaming keeps the time a log was last written, so this is the order the runs happened in
+		rotatedFiles.sort(Comparator.comparingLong(File::lastModified).thenComparing(File::getName));
+		return rotatedFiles;
+	}
+
+	/**
+	 * @param file - a mapped motion log
+	 * @return the file with the time it was last written added to its name, and a number if that file is already there
+	 */
+	static File getRotatedFile(File file) {
+		String name = file.getName();
+		String extension = "";
+		if (name.endsWith(EXTENSION)) {
+			name = name.substring(0, name.length() - EXTENSION.length());
+			extension = EXTENSION;
+		}
+		File directory = file.getAbsoluteFile().getParentFile();
+		String time = new SimpleDateFormat("yyyy-MM-dd HH-mm-ss").format(new Date(file.lastModified()));
+		String rotatedName = name + ' ' + time;
+		File rotated = new File(directory, rotatedName + extension);
+		for (int i = 2; rotated.exists(); i++) {
+			rotated = new File(directory, rotatedName + ' ' + i + extension);
+		}
+		return rotated;
+	}
+
+	/**
+	 * Stores a tick in the file, replacing the oldest one if the file is full. Only one thread may append. This never
+	 * allocates or makes a system call.
+	 */
+	public void append(double time, double actualX, double actualY, double actualAngle, double targetX,
+		double targetY, double targetAngle, double crossTrackError, double lagError, double angleError,
+		double leftPower, double rightPower, int pathNumber, MotionState motionState) {
+		long sequence = appendedCount;
+		int slot = dataOffset + ((int) (sequence % capacity) * SLOT_SIZE);
+		buffer.putLong(slot, sequence);
+		buffer.position(slot + SEQUENCE_SIZE);
+		MotionLogFile.putRecord(buffer, time, actualX, actualY, actualAngle, targetX, targetY, targetAngle,
+			crossTrackError, lagError, angleError, leftPower, rightPower, pathNumber, motionState);
+		buffer.putInt(getCommitMarker(buffer, slot));
+		appendedCount = sequence + 1;
+	}
+
+	/**
+	 * The checksum of the sequence number and record in a slot, which is never 0 so an empty slot never matches it
+	 */
+	static int getCommitMarker(ByteBuffer buffer, int slot) {
+		long hash = 0xCBF29CE484222325L;
+		int end = slot + SEQUENCE_SIZE + MotionLogFile.RECORD_SIZE;
+		int i = slot;
+		for (; (i + Long.BYTES) <= end; i += Long.BYTES) {
+			hash = (hash ^ buffer.getLong(i)) * 0x100000001B3L;
+		}
+		for (; i < end; i++) {
+			hash = (hash ^ buffer.get(i)) * 0x100000001B3L;
+		}
+		int marker = (int) (hash ^ (hash >>> 32));
+		return (marker == 0) ? 1 : marker;
+	}
+
+	static int align(int offset) {
+		return (offset + (Long.BYTES - 1)) & ~(Long.BYTES - 1);
+	}
+
+	/**
+	 * Waits for the operating system to write the file to the disk. This is a system call that can take many
+	 * milliseconds on flash, so do not call it from the control thread.
+	 */
+	public void force() {
+		buffer.force();
+	}
+
+	/**
+	 * @return how many ticks have been appended, including ones that were replaced
+	 */
+	public long getAppendedCount() {
+		return appendedCount;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of logs of past runs that are kept
+	 */
+	public int getKeptLogCount() {
+		return keptLogCount;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public String toString() {
+		return "MappedMotionLog{" +
+			"file=" + file +
+			", capacity=" + capacity +
+			", keptLogCount=" + keptLogCount +
+			", dataOffset=" + dataOffset +
+			", appendedCount=" + appendedCount +
+			'}';
+	}
+}
@@ -0,0 +1,84 @@
+package org.waltonrobotics.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Turns binary motion logs into CSV files with the same columns as the CSV log. Run this on a computer after copying
+ * the logs off of the robot, with the logs as the arguments. Each CSV file is written next to its log.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public final class MotionLogCsvExporter {
+
+	private MotionLogCsvExporter() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Give the motion logs to export as the arguments");
+			return;
+		}
+		for (String arg : args) {
+			File log = new File(arg);
+			File csv = getCsvFile(log);
+			export(log, csv);
+			System.out.println("File " + csv + " has been made!");
+		}
+	}
+
+	/**
+	 * @param log - a binary motion log
+	 * @return the log with its extension changed to .csv
+	 */
+	public static File getCsvFile(File log) {
+		String name = log.getName();
+		if (name.endsWith(MotionLogFile.EXTENSION)) {
+			name = name.substring(0, name.length() - MotionLogFile.EXTENSION.length());
+		}
+		return new File(log.getAbsoluteFile().getParentFile(), name + ".csv");
+	}
+
+	/**
+	 * @param log - the binary motion log to read
+	 * @param csv - where to write the CSV file
+	 * @throws IOException if the log could not be read or the CSV file could not be written
+	 */
+	public static void export(File log, File csv) throws IOException {
+		MotionLogReader reader = new MotionLogReader(log);
+		try (Writer writer = Files.newBufferedWriter(csv.toPath(), StandardCharsets.UTF_8)) {
+			export(reader, writer);
+		}
+	}
+
+	/**
+	 * Writes the header and every record of a log as CSV
+	 *
+	 * @param reader - the log to read
+	 * @param writer - where to write the CSV
+	 * @throws IOException if the CSV could not be written
+	 */
+	public static void export(MotionLogReader reader, Writer writer) throws IOException {
+		int columnCount = reader.getColumnCount();
+		for (int column = 0; column < columnCount; column++) {
+			if (column != 0) {
+				writer.write(", ");
+			}
+			writer.write(reader.getColumnName(column));
+		}
+		writer.write('\n');
+
+		for (int record = 0; record < reader.size(); record++) {
+			for (int column = 0; column < columnCount; column++) {
+				if (column != 0) {
+					writer.write(", ");
+				}
+				writer.write(reader.getText(record, column));
+			}
+			writer.write('\n');
+		}
+	}
+}
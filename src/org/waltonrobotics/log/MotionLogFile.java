@@ -0,0 +1,161 @@
+package org.waltonrobotics.log;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.waltonrobotics.controller.MotionState;
+
+/**
+ * The binary format of the motion log. A tick is a fixed width record of 57 bytes, about a fifth of a CSV row. The
+ * time is kept as a double because it is the FPGA time and grows all match, everything else fits in a float.
+ * <br>
+ * The file is big endian and laid out as:
+ * <ul>
+ * <li>header: magic (int), version (int), header size (int), record size (int)</li>
+ * <li>schema: column count (int), then the type (byte) and name (string) of every column</li>
+ * <li>motion states: count (int), then the name (string) of every state, in the order of their record values</li>
+ * <li>metadata: count (int), then the key and value (strings) of every entry, for example the robot width</li>
+ * <li>records, one after another until the end of the file. A record cut short by a crash is left out when read.</li>
+ * </ul>
+ * Strings are an unsigned short length and then that many bytes of UTF-8.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public final class MotionLogFile {
+
+	/**
+	 * "WRML" in ASCII
+	 */
+	public static final int MAGIC = 0x57524D4C;
+	public static final int VERSION = 1;
+	public static final String EXTENSION = ".wrlog";
+
+	public static final byte TYPE_DOUBLE = 0;
+	public static final byte TYPE_FLOAT = 1;
+	public static final byte TYPE_INT = 2;
+	/**
+	 * A byte that indexes the motion state names, or -1 for none
+	 */
+	public static final byte TYPE_STATE = 3;
+
+	public static final int TIME = 0;
+	public static final int ACTUAL_X = 1;
+	public static final int ACTUAL_Y = 2;
+	public static final int ACTUAL_ANGLE = 3;
+	public static final int TARGET_X = 4;
+	public static final int TARGET_Y = 5;
+	public static final int TARGET_ANGLE = 6;
+	public static final int CROSS_TRACK_ERROR = 7;
+	public static final int LAG_ERROR = 8;
+	public static final int ANGLE_ERROR = 9;
+	public static final int LEFT_POWER = 10;
+	public static final int RIGHT_POWER = 11;
+	public static final int PATH_NUMBER = 12;
+	public static final int MOTION_STATE = 13;
+	public static final int COLUMN_COUNT = 14;
+
+	/**
+	 * The same names as the columns of the CSV log
+	 */
+	private static final String[] COLUMN_NAMES = {"Time", "xActual", "yActual", "angleActual", "xTarget",
+		"yTarget", "angleTarget", "XTE", "lagE", "angleE", "pLeft", "pRight", "pathNumber", "motionState"};
+	private static final byte[] COLUMN_TYPES = {TYPE_DOUBLE, TYPE_FLOAT, TYPE_FLOAT, TYPE_FLOAT, TYPE_FLOAT,
+		TYPE_FLOAT, TYPE_FLOAT, TYPE_FLOAT, TYPE_FLOAT, TYPE_FLOAT, TYPE_FLOAT, TYPE_FLOAT, TYPE_INT, TYPE_STATE};
+	public static final int RECORD_SIZE = Double.BYTES + (11 * Float.BYTES) + Integer.BYTES + Byte.BYTES;
+
+	private static final MotionState[] MOTION_STATES = MotionState.values();
+
+	private MotionLogFile() {
+	}
+
+	/**
+	 * @param type - one of the TYPE constants
+	 * @return the number of bytes a value of the type takes in a record
+	 */
+	public static int getTypeSize(byte type) {
+		switch (type) {
+			case TYPE_DOUBLE:
+				return Double.BYTES;
+			case TYPE_FLOAT:
+			case TYPE_INT:
+				return Integer.BYTES;
+			case TYPE_STATE:
+				return Byte.BYTES;
+			default:
+				throw new IllegalArgumentException("Unknown column type " + type);
+		}
+	}
+
+	/**
+	 * Puts the header, schema, motion states and metadata at the start of an empty buffer
+	 *
+	 * @param buffer - where to put the header
+	 * @param metadata - information about the robot to keep with the log
+	 */
+	public static void putHeader(ByteBuffer buffer, Map<String, String> metadata) {
+		int start = buffer.position();
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		int headerSizePosition = buffer.position();
+		buffer.putInt(0);
+		buffer.putInt(RECORD_SIZE);
+
+		buffer.putInt(COLUMN_COUNT);
+		for (int i = 0; i < COLUMN_COUNT; i++) {
+			buffer.put(COLUMN_TYPES[i]);
+			putString(buffer, COLUMN_NAMES[i]);
+		}
+
+		buffer.putInt(MOTION_STATES.length);
+		for (MotionState motionState : MOTION_STATES) {
+			putString(buffer, motionState.name());
+		}
+
+		buffer.putInt(metadata.size());
+		for (Entry<String, String> entry : metadata.entrySet()) {
+			putString(buffer, entry.getKey());
+			putString(buffer, entry.getValue());
+		}
+
+		buffer.putInt(headerSizePosition, buffer.position() - start);
+	}
+
+	/**
+	 * Puts one tick in the buffer, which must have RECORD_SIZE bytes left
+	 */
+	public static void putRecord(ByteBuffer buffer, double time, double actualX, double actualY,
+		double actualAngle, double targetX, double targetY, double targetAngle, double crossTrackError,
+		double lagError, double angleError, double leftPower, double rightPower, int pathNumber,
+		MotionState motionState) {
+		buffer.putDouble(time);
+		buffer.putFloat((float) actualX);
+		buffer.putFloat((float) actualY);
+		buffer.putFloat((float) actualAngle);
+		buffer.putFloat((float) targetX);
+		buffer.putFloat((float) targetY);
+		buffer.putFloat((float) targetAngle);
+		buffer.putFloat((float) crossTrackError);
+		buffer.putFloat((float) lagError);
+		buffer.putFloat((float) angleError);
+		buffer.putFloat((float) leftPower);
+		buffer.putFloat((float) rightPower);
+		buffer.putInt(pathNumber);
+		buffer.put((motionState == null) ? -1 : (byte) motionState.ordinal());
+	}
+
+	static void putString(ByteBuffer buffer, String string) {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > 0xFFFF) {
+			throw new IllegalArgumentException("Strings in the log can be at most 65535 bytes long");
+		}
+		buffer.putShort((short) bytes.length);
+		buffer.put(bytes);
+	}
+
+	static String getString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,222 @@
+package org.waltonrobotics.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads a binary motion log. The file is memory mapped and the records are read out of it as they are asked for. Only
+ * the schema in the file is used to find the columns, so logs from older robot code can still be read as long as the
+ * version matches.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public final class MotionLogReader {
+
+	private final File file;
+	private final ByteBuffer records;
+	private final int recordSize;
+	private final int size;
+	private final String[] columnNames;
+	private final byte[] columnTypes;
+	private final int[] columnOffsets;
+	private final String[] motionStateNames;
+	private final Map<String, String> metadata;
+
+	/**
+	 * @param file - the log to read
+	 * @throws IOException if the file could not be read or is not a motion log
+	 */
+	public MotionLogReader(File file) throws IOException {
+		this.file = file;
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		try {
+			if (buffer.getInt() != MotionLogFile.MAGIC) {
+				throw new IOException(file + " is not a motion log");
+			}
+			int version = buffer.getInt();
+			if (version != MotionLogFile.VERSION) {
+				throw new IOException(file + " has motion log version " + version + ", expected "
+					+ MotionLogFile.VERSION);
+			}
+			int headerSize = buffer.getInt();
+			recordSize = buffer.getInt();
+			if (recordSize <= 0) {
+				throw new IOException(file + " has a record size of " + recordSize);
+			}
+
+			int columnCount = buffer.getInt();
+			// Each column is at least a type and an empty name
+			if ((columnCount <= 0) || (columnCount > (buffer.remaining() / (Byte.BYTES + Short.BYTES)))) {
+				throw new IOException(file + " has " + columnCount + " columns");
+			}
+			columnNames = new String[columnCount];
+			columnTypes = new byte[columnCount];
+			columnOffsets = new int[columnCount];
+			int offset = 0;
+			for (int i = 0; i < columnCount; i++) {
+				columnTypes[i] = buffer.get();
+				columnNames[i] = MotionLogFile.getString(buffer);
+				columnOffsets[i] = offset;
+				offset += MotionLogFile.getTypeSize(columnTypes[i]);
+			}
+			if (offset != recordSize) {
+				throw new IOException(file + " has columns that do not add up to its record size");
+			}
+
+			int motionStateCount = buffer.getInt();
+			if ((motionStateCount < 0) || (motionStateCount > (buffer.remaining() / Short.BYTES))) {
+				throw new IOException(file + " has " + motionStateCount + " motion states");
+			}
+			motionStateNames = new String[motionStateCount];
+			for (int i = 0; i < motionStateNames.length; i++) {
+				motionStateNames[i] = MotionLogFile.getString(buffer);
+			}
+
+			int metadataCount = buffer.getInt();
+			if ((metadataCount < 0) || (metadataCount > (buffer.remaining() / (2 * Short.BYTES)))) {
+				throw new IOException(file + " has " + metadataCount + " metadata entries");
+			}
+			Map<String, String> metadata = new LinkedHashMap<>();
+			for (int i = 0; i < metadataCount; i++) {
+				metadata.put(MotionLogFile.getString(buffer), MotionLogFile.getString(buffer));
+			}
+			this.metadata = Collections.unmodifiableMap(metadata);
+
+			if (buffer.position() != headerSize) {
+				throw new IOException(file + " has a header of the wrong size");
+			}
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new IOException(file + " is truncated or has an unexpected layout", e);
+		}
+
+		records = buffer.slice();
+		// A record cut short by a crash is left out
+		size = records.capacity() / recordSize;
+	}
+
+	/**
+	 * @return the number of whole records in the log
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int getColumnCount() {
+		return columnNames.length;
+	}
+
+	public String getColumnName(int column) {
+		return columnNames[column];
+	}
+
+	/**
+	 * @return one of the MotionLogFile TYPE constants
+	 */
+	public byte getColumnType(int column) {
+		return columnTypes[column];
+	}
+
+	/**
+	 * @param name - the name of a column
+	 * @return the index of the column, or -1 if there is no column with that name
+	 */
+	public int getColumn(String name) {
+		for (int i = 0; i < columnNames.length; i++) {
+			if (columnNames[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the information about the robot kept with the log
+	 */
+	public Map<String, String> getMetadata() {
+		return metadata;
+	}
+
+	/**
+	 * @param record - the index of the record
+	 * @param column - the index of the column
+	 * @return the value as a double. Motion states are their index in the motion state names.
+	 */
+	public double getDouble(int record, int column) {
+		int index = getIndex(record, column);
+		switch (columnTypes[column]) {
+			case MotionLogFile.TYPE_DOUBLE:
+				return records.getDouble(index);
+			case MotionLogFile.TYPE_FLOAT:
+				return records.getFloat(index);
+			case MotionLogFile.TYPE_INT:
+				return records.getInt(index);
+			default:
+				return records.get(index);
+		}
+	}
+
+	/**
+	 * @param record - the index of the record
+	 * @param column - the index of the column
+	 * @return the value as it would be written in a CSV log
+	 */
+	public String getText(int record, int column) {
+		int index = getIndex(record, column);
+		switch (columnTypes[column]) {
+			case MotionLogFile.TYPE_DOUBLE:
+				return Double.toString(records.getDouble(index));
+			case MotionLogFile.TYPE_FLOAT:
+				return Float.toString(records.getFloat(index));
+			case MotionLogFile.TYPE_INT:
+				return Integer.toString(records.getInt(index));
+			default:
+				return getMotionStateName(records.get(index));
+		}
+	}
+
+	/**
+	 * @param value - the value of a motion state column
+	 * @return the name of the state, or "null" if there was none
+	 */
+	public String getMotionStateName(int value) {
+		if ((value < 0) || (value >= motionStateNames.length)) {
+			return "null";
+		}
+		return motionStateNames[value];
+	}
+
+	private int getIndex(int record, int column) {
+		if ((record < 0) || (record >= size)) {
+			throw new IndexOutOfBoundsException("record " + record + " is not between 0 and " + size);
+		}
+		return (record * recordSize) + columnOffsets[column];
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public String toString() {
+		return "MotionLogReader{" +
+			"file=" + file +
+			", size=" + size +
+			", recordSize=" + recordSize +
+			", columnCount=" + columnNames.length +
+			", metadata=" + metadata +
+			'}';
+	}
+}
@@ -0,0 +1,119 @@
+package org.waltonrobotics.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the ticks that were committed to a MappedMotionLog, even if the robot crashed or browned out while writing it,
+ * and saves them as a binary motion log that MotionLogReader and MotionLogCsvExporter can read. Slots whose commit
+ * marker does not match are left out. Run this on a computer after copying the file off of the robot, with the files
+ * as the arguments.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public final class MotionLogRecovery {
+
+	private MotionLogRecovery() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Give the mapped motion logs to recover as the arguments");
+			return;
+		}
+		for (String arg : args) {
+			File mapped = new File(arg);
+			File log = getLogFile(mapped);
+			int size = recover(mapped, log);
+			System.out.println("Recovered " + size + " ticks to " + log);
+		}
+	}
+
+	/**
+	 * @param mapped - a mapped motion log
+	 * @return the file with its extension changed to the binary motion log extension
+	 */
+	public static File getLogFile(File mapped) {
+		String name = mapped.getName();
+		if (name.endsWith(MappedMotionLog.EXTENSION)) {
+			name = name.substring(0, name.length() - MappedMotionLog.EXTENSION.length());
+		}
+		return new File(mapped.getAbsoluteFile().getParentFile(), name + MotionLogFile.EXTENSION);
+	}
+
+	/**
+	 * @param mapped - the mapped motion log to read
+	 * @param log - where to save the committed ticks, oldest first
+	 * @return the number of ticks recovered
+	 * @throws IOException if the file could not be read or is not a mapped motion log, or the log could not be written
+	 */
+	public static int recover(File mapped, File log) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(mapped.toPath(), StandardOpenOption.READ)) {
+			buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		int capacity;
+		int dataOffset;
+		int logHeaderSize;
+		try {
+			if (buffer.getInt() != MappedMotionLog.MAGIC) {
+				throw new IOException(mapped + " is not a mapped motion log");
+			}
+			int version = buffer.getInt();
+			if (version != MappedMotionLog.VERSION) {
+				throw new IOException(mapped + " has mapped motion log version " + version + ", expected "
+					+ MappedMotionLog.VERSION);
+			}
+			capacity = buffer.getInt();
+			dataOffset = buffer.getInt();
+			// The header size of the MotionLogFile header
+			logHeaderSize = buffer.getInt(MappedMotionLog.HEADER_SIZE + (2 * Integer.BYTES));
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new IOException(mapped + " is truncated or has an unexpected layout", e);
+		}
+		if ((capacity <= 0) || (buffer.capacity() < (dataOffset + ((long) capacity * MappedMotionLog.SLOT_SIZE)))
+			|| ((MappedMotionLog.HEADER_SIZE + logHeaderSize) > dataOffset)) {
+			throw new IOException(mapped + " is truncated or has an unexpected layout");
+		}
+
+		long[] sequences = new long[capacity];
+		int size = 0;
+		for (int i = 0; i < capacity; i++) {
+			int slot = dataOffset + (i * MappedMotionLog.SLOT_SIZE);
+			int marker = buffer.getInt(slot + MappedMotionLog.SEQUENCE_SIZE + MotionLogFile.RECORD_SIZE);
+			long sequence = buffer.getLong(slot);
+			if ((marker == MappedMotionLog.getCommitMarker(buffer, slot)) && ((sequence % capacity) == i)) {
+				sequences[size++] = sequence;
+			}
+		}
+		Arrays.sort(sequences, 0, size);
+
+		ByteBuffer out = ByteBuffer.allocate(logHeaderSize + (size * MotionLogFile.RECORD_SIZE));
+		ByteBuffer source = buffer.duplicate();
+		source.limit(MappedMotionLog.HEADER_SIZE + logHeaderSize).position(MappedMotionLog.HEADER_SIZE);
+		out.put(source);
+		for (int i = 0; i < size; i++) {
+			int record = dataOffset + ((int) (sequences[i] % capacity) * MappedMotionLog.SLOT_SIZE)
+				+ MappedMotionLog.SEQUENCE_SIZE;
+			source.limit(record + MotionLogFile.RECORD_SIZE).position(record);
+			out.put(source);
+		}
+
+		out.flip();
+		try (FileChannel channel = FileChannel.open(log.toPath(), StandardOpenOption.CREATE,
+			StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (out.hasRemaining()) {
+				channel.write(out);
+			}
+		}
+		return size;
+	}
+}
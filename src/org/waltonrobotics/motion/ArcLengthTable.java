@@ -0,0 +1,121 @@
+package org.waltonrobotics.motion;
+
+/**
+ * Maps distance along a Bezier curve back to the curve parameter t. The length of the curve is integrated with 5 point
+ * Gauss-Legendre quadrature over evenly spaced intervals of t, and a distance is inverted by finding its interval in
+ * the table and refining t with Newton's method. <br> <a href=https://en.wikipedia.org/wiki/Gaussian_quadrature>Gaussian
+ * quadrature</a>
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+final class ArcLengthTable {
+
+	private static final double[] GAUSS_NODES = {
+		-0.9061798459386640, -0.5384693101056831, 0.0, 0.5384693101056831, 0.9061798459386640};
+	private static final double[] GAUSS_WEIGHTS = {
+		0.2369268850561891, 0.4786286704993665, 0.5688888888888889, 0.4786286704993665, 0.2369268850561891};
+	private static final int NEWTON_ITERATIONS = 4;
+	private static final double TOLERANCE = 1.0e-9;
+
+	private final BezierEvaluator evaluator;
+	private final double[] result = new double[BezierEvaluator.RESULT_SIZE];
+	private final double[] lengths;
+	private final int intervals;
+
+	/**
+	 * @param evaluator - the evaluator of the curve
+	 * @param intervals - how many intervals of t to split the table into
+	 */
+	ArcLengthTable(BezierEvaluator evaluator, int intervals) {
+		this.evaluator = evaluator;
+		this.intervals = Math.max(intervals, 1);
+		lengths = new double[this.intervals + 1];
+		for (int i = 1; i <= this.intervals; i++) {
+			lengths[i] = lengths[i - 1] + integrate((i - 1) / (double) this.intervals, i / (double) this.intervals);
+		}
+	}
+
+	/**
+	 * @return the length of the whole curve
+	 */
+	double getLength() {
+		return lengths[intervals];
+	}
+
+	/**
+	 * @param distance - the distance along the curve from its start
+	 * @return the t that is that far along the curve
+	 */
+	double getParameter(double distance) {
+		if (distance <= 0) {
+			return 0;
+		}
+		if (distance >= getLength()) {
+			return 1;
+		}
+
+		// Find the interval holding the distance
+		int low = 0;
+		int high = intervals;
+		while ((high - low) > 1) {
+			int middle = (low + high) >>> 1;
+			if (lengths[middle] <= distance) {
+				low = middle;
+			} else {
+				high = middle;
+			}
+		}
+
+		double tLow = low / (double) intervals;
+		double tHigh = high / (double) intervals;
+		double intervalLength = lengths[high] - lengths[low];
+		if (intervalLength <= 0) {
+			return tLow;
+		}
+
+		double t = tLow + (((distance - lengths[low]) / intervalLength) * (tHigh - tLow));
+		for (int i = 0; i < NEWTON_ITERATIONS; i++) {
+			double error = (lengths[low] + integrate(tLow, t)) - distance;
+			if (Math.abs(error) < TOLERANCE) {
+				break;
+			}
+			double speed = getSpeed(t);
+			if (speed <= 0) {
+				break;
+			}
+			t = Math.max(tLow, Math.min(tHigh, t - (error / speed)));
+		}
+		return t;
+	}
+
+	/**
+	 * @return the length of the curve between t = from and t = to
+	 */
+	private double integrate(double from, double to) {
+		double halfWidth = (to - from) / 2.0;
+		double center = (to + from) / 2.0;
+		double sum = 0;
+		for (int i = 0; i < GAUSS_NODES.length; i++) {
+			sum += GAUSS_WEIGHTS[i] * getSpeed(center + (halfWidth * GAUSS_NODES[i]));
+		}
+		return sum * halfWidth;
+	}
+
+	/**
+	 * @return the magnitude of the derivative of the curve at t
+	 */
+	private double getSpeed(double t) {
+		evaluator.evaluate(t, result);
+		double dx = result[BezierEvaluator.DX];
+		double dy = result[BezierEvaluator.DY];
+		return Math.sqrt((dx * dx) + (dy * dy));
+	}
+
+	@Override
+	public String toString() {
+		return "ArcLengthTable{" +
+			"intervals=" + intervals +
+			", length=" + getLength() +
+			'}';
+	}
+}
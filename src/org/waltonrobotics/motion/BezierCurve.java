@@ -1,13 +1,12 @@
 package org.waltonrobotics.motion;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
+import org.waltonrobotics.controller.DriveKinematics;
 import org.waltonrobotics.controller.Path;
 import org.waltonrobotics.controller.PathData;
 import org.waltonrobotics.controller.Pose;
-import org.waltonrobotics.controller.State;
+import org.waltonrobotics.controller.Trajectory;
 
 /**
  * <p>This Path is a simple curve. The shape of the curve is controlled by the control points.
@@ -25,10 +24,9 @@ public class BezierCurve extends Path {
 	private final double startVelocity;
 	private final double endVelocity;
 	private final double startLCenter;
-	private final LinkedList<PathData> pathData;
-	private final List<Pose> pathPoints;
-	private double curveLength;
-	private double[] coefficients;
+	private final PathData startPathData;
+	private final Trajectory trajectory;
+	private CurveGeometry geometry;
 
 	/**
 	 * This constructor is used with the splines, but feel free to use it when creating your own motions
@@ -44,17 +42,48 @@ public class BezierCurve extends Path {
 	public BezierCurve(double vCruise, double aMax, double startVelocity, double endVelocity,
 		boolean isBackwards,
 		PathData startPathData, List<Pose> controlPoints) {
-		super(vCruise, aMax, isBackwards, controlPoints);
+		this(DriveKinematics.getDefault(), vCruise, aMax, startVelocity, endVelocity, isBackwards, startPathData,
+			controlPoints, null, null);
+	}
+
+	/**
+	 * This constructor is used with the splines, but feel free to use it when creating your own motions
+	 *
+	 * @param kinematics - the robot width and generation settings to make the curve with
+	 * @param vCruise - the cruise velocity of the robot
+	 * @param aMax - the maximum acceleration of the robot
+	 * @param startVelocity - the start velocity
+	 * @param endVelocity - the end velocity
+	 * @param isBackwards - whether or not to move the robot backwards
+	 * @param startPathData - the starting PathData for the curve
+	 * @param controlPoints - the control points that define the curve
+	 */
+	public BezierCurve(DriveKinematics kinematics, double vCruise, double aMax, double startVelocity,
+		double endVelocity, boolean isBackwards, PathData startPathData, List<Pose> controlPoints) {
+		this(kinematics, vCruise, aMax, startVelocity, endVelocity, isBackwards, startPathData, controlPoints, null,
+			null);
+	}
+
+	/**
+	 * @param geometry - the already sampled points of the curve, or null to sample them when they are needed
+	 * @param trajectory - already generated samples for the curve, or null to generate them
+	 */
+	BezierCurve(DriveKinematics kinematics, double vCruise, double aMax, double startVelocity, double endVelocity,
+		boolean isBackwards,
+		PathData startPathData, List<Pose> controlPoints, CurveGeometry geometry, Trajectory trajectory) {
+		super(kinematics, vCruise, aMax, isBackwards, controlPoints);
 		this.startVelocity = startVelocity;
 		this.endVelocity = endVelocity;
 		// The starting average encoder distance should always be 0
 		startLCenter = startPathData.getLCenter();
-		updateCoefficients();
-		pathData = new LinkedList<>();
-		pathPoints = new ArrayList<>(getPathNumberOfSteps());
-		createPoints();
-		getCurveLength();
-		setData(startPathData);
+		this.geometry = geometry;
+		this.startPathData = startPathData;
+		if (trajectory == null) {
+			this.trajectory = new Trajectory(getKinematics().getPathNumberOfSteps(), isBackwards);
+			startGeneration();
+		} else {
+			this.trajectory = trajectory;
+		}
 	}
 
 	/**
@@ -63,7 +92,27 @@ public class BezierCurve extends Path {
 	public BezierCurve(double vCruise, double aMax, double startVelocity, double endVelocity,
 		boolean isBackwards,
 		List<Pose> controlPoints) {
-		this(vCruise, aMax, startVelocity, endVelocity, isBackwards,
+		this(DriveKinematics.getDefault(), vCruise, aMax, startVelocity, endVelocity, isBackwards, controlPoints,
+			null);
+	}
+
+	/**
+	 * Use this if you don't need to define a starting PathData
+	 *
+	 * @param kinematics - the robot width and generation settings to make the curve with
+	 */
+	public BezierCurve(DriveKinematics kinematics, double vCruise, double aMax, double startVelocity,
+		double endVelocity, boolean isBackwards, List<Pose> controlPoints) {
+		this(kinematics, vCruise, aMax, startVelocity, endVelocity, isBackwards, controlPoints, null);
+	}
+
+	/**
+	 * @param trajectory - already generated samples for the curve, or null to generate them
+	 */
+	BezierCurve(DriveKinematics kinematics, double vCruise, double aMax, double startVelocity, double endVelocity,
+		boolean isBackwards,
+		List<Pose> controlPoints, Trajectory trajectory) {
+		this(kinematics, vCruise, aMax, startVelocity, endVelocity, isBackwards,
 			(controlPoints.isEmpty()) ?
 				new PathData(new Pose(0, 0), isBackwards) :
 				((controlPoints.size() == 1) ?
@@ -82,7 +131,7 @@ public class BezierCurve extends Path {
 								controlPoints.get(1).getX() - controlPoints.get(0).getX())
 						)
 						, isBackwards)),
-			controlPoints);
+			controlPoints, null, trajectory);
 	}
 
 	public BezierCurve(double vCruise, double aMax, double startVelocity, double endVelocity,
@@ -92,155 +141,75 @@ public class BezierCurve extends Path {
 	}
 
 	/**
-	 * Uses the formula to find the value of nCr
-	 *
-	 * @return nCr
+	 * @return if new curves place their samples evenly in distance instead of evenly in t by default. Default is
+	 * false.
+	 * @deprecated use DriveKinematics.isArcLengthParameterized()
 	 */
-	private static double findNumberOfCombination(double n, double r) {
-		double nFactorial = factorial(n);
-		double rFactorial = factorial(r);
-		double nMinusRFactorial = factorial(n - r);
-
-		return nFactorial / (rFactorial * nMinusRFactorial);
+	@Deprecated
+	public static boolean isArcLengthParameterized() {
+		return Path.isArcLengthParameterized();
 	}
 
 	/**
-	 * Finds the factorial of any integer or double, d
-	 *
-	 * @return the factorial of d
+	 * @param arcLengthParameterized if new curves should place their samples evenly in distance along the curve by
+	 * default
+	 * @deprecated make paths with a DriveKinematics instead
 	 */
-	private static double factorial(double d) {
-		double r = (d - Math.floor(d)) + 1.0;
-		while (d > 1) {
-			r *= d;
-			d -= 1;
-		}
-		return r;
-	}
-
-	private void createPoints() {
-		for (double i = 0; i <= getPathNumberOfSteps(); i++) {
-			pathPoints.add(getPoint(i / getPathNumberOfSteps()));
-		}
-
+	@Deprecated
+	public static void setArcLengthParameterized(boolean arcLengthParameterized) {
+		Path.setArcLengthParameterized(arcLengthParameterized);
 	}
 
 	/**
-	 * Caluclates the length of the curve
+	 * Samples the curve the first time it is needed, then adds one sample to the Trajectory. The sampled points are let
+	 * go once every sample is generated, so a curve waiting in the queue does not keep them.
 	 */
-	private void getCurveLength() {
-		curveLength = 0;
-
-		if (getKeyPoints().size() > 1) {
-			for (int i = 1; i < getPathNumberOfSteps(); i++) {
-				curveLength += pathPoints.get(i).distance(pathPoints.get(i - 1));
-			}
-		}
-	}
-
-	/**
-	 * Updates the coefficients used for calculations
-	 */
-	private void updateCoefficients() {
-		int n = getDegree();
-		coefficients = new double[n + 1];
-		for (int i = 0; i < coefficients.length; i++) {
-			coefficients[i] = findNumberOfCombination(n, i);
-		}
-	}
-
-	/**
-	 * @param percentage - t
-	 * @return the Pose that is at percentage t along the curve
-	 */
-	private Pose getPoint(double percentage) {
-		double xCoordinateAtPercentage = 0;
-		double yCoordinateAtPercentage = 0;
-
-		int n = getDegree();
-
-		for (int i = 0; i <= n; i++) {
-			double coefficient = coefficients[i];
-
-			double oneMinusT = StrictMath.pow(1 - percentage, (n - i));
-
-			double powerOfT = StrictMath.pow(percentage, (double) i);
-
-			Pose pointI = getKeyPoints().get(i);
-
-			xCoordinateAtPercentage += (coefficient * oneMinusT * powerOfT * pointI.getX());
-			yCoordinateAtPercentage += (coefficient * oneMinusT * powerOfT * pointI.getY());
-		}
-
-		return new Pose(xCoordinateAtPercentage, yCoordinateAtPercentage, getAngle(percentage));
-	}
-
-	/**
-	 * @return the degree of the curve
-	 */
-	private int getDegree() {
-		return getKeyPoints().size() - 1;
-	}
-
-	/**
-	 * @param t - percent along curve
-	 * @return angle at point
-	 */
-	private double getAngle(double t) {
-		int n = getDegree();
-		double dx = 0;
-		double dy = 0;
-		for (int i = 0; i < n; i++) {
-			double coefficient =
-				findNumberOfCombination(n, i) * StrictMath.pow(t, i) * StrictMath.pow(1 - t, n - i);
-			dx += coefficient * (n + 1) * (getKeyPoints().get(i + 1).getX() - getKeyPoints().get(i)
-				.getX());
-			dy += coefficient * (n + 1) * (getKeyPoints().get(i + 1).getY() - getKeyPoints().get(i)
-				.getY());
+	@Override
+	protected final boolean generateNext() {
+		if (geometry == null) {
+			DriveKinematics kinematics = getKinematics();
+			geometry = CurveGeometry.sample(getKeyPoints(), isBackwards(), kinematics.getPathNumberOfSteps(),
+				kinematics.isArcLengthParameterized());
 		}
 
-		if (t == 1.0) {
-			dx = getKeyPoints().get(getKeyPoints().size() - 1).getX()
-				- getKeyPoints().get(getKeyPoints().size() - 2).getX();
-			dy = getKeyPoints().get(getKeyPoints().size() - 1).getY()
-				- getKeyPoints().get(getKeyPoints().size() - 2).getY();
+		int step = trajectory.size() + 1;
+		if (step > geometry.getSteps()) {
+			geometry = null;
+			return false;
 		}
 
-		double angle = StrictMath.atan2(dy, dx);
-
-		if (isBackwards()) {
-			angle += Math.PI;
+		if (trajectory.isEmpty()) {
+			calculateData(startPathData.getCenterPose().getX(), startPathData.getCenterPose().getY(),
+				startPathData.getCenterPose().getAngle(), startPathData.getLeftState().getLength(),
+				startPathData.getRightState().getLength(), startPathData.getTime(), step);
+		} else {
+			int last = trajectory.size() - 1;
+			calculateData(trajectory.getX(last), trajectory.getY(last), trajectory.getAngle(last),
+				trajectory.getLeftLength(last), trajectory.getRightLength(last), trajectory.getTime(last), step);
 		}
-		angle %= (2 * Math.PI);
-
-		return angle;
-	}
-
-	/**
-	 * Creates the PathData list
-	 */
-	private void setData(PathData data) {
-		for (int i = 1; i <= getPathNumberOfSteps(); i++) {
-			data = calculateData(data, pathPoints.get(i));
-			pathData.add(data);
+		if (step < geometry.getSteps()) {
+			return true;
 		}
+		geometry = null;
+		return false;
 	}
 
 	/**
-	 * @param currentCenter - The Pose of the PathData to calculate on
-	 * @return a new PathData from the calculations
+	 * Adds the sample that moves the robot from the previous sample to the given point of the curve to the Trajectory
+	 *
+	 * @param step - The index of the sampled point to calculate on
 	 */
-	private PathData calculateData(PathData previousPathData, Pose currentCenter) {
-		Pose previousCenter = previousPathData.getCenterPose();
-		State previousLeft = previousPathData.getLeftState();
-		State previousRight = previousPathData.getRightState();
-		double previousTime = previousPathData.getTime();
-		double previousLCenter = previousPathData.getLCenter();
+	private void calculateData(double previousX, double previousY, double previousAngle,
+		double previousLeftLength, double previousRightLength, double previousTime, int step) {
+		double currentX = geometry.getX(step);
+		double currentY = geometry.getY(step);
+		double curveLength = geometry.getLength();
+		double previousLCenter = (previousLeftLength + previousRightLength) / 2.0;
 		// When cruising, acceleration is 0
 		double acceleration = 0;
 
 		// The change in angle of the robot
-		double dAngle = currentCenter.getAngle() - previousCenter.getAngle();
+		double dAngle = geometry.getAngle(step) - previousAngle;
 		if (dAngle > Math.PI) {
 			dAngle -= 2 * Math.PI;
 		} else if (dAngle < -Math.PI) {
@@ -249,10 +218,11 @@ public class BezierCurve extends Path {
 
 		// The change in distance of the robot sides
 		// FIXME This is probably wrong dLength should be 0 if there is not angle
-//		double dLength = (previousCenter.sameCoordinates(currentCenter)? 0: previousCenter.distance(currentCenter)) * (isBackwards() ? -1 : 1);
-		double dLength = previousCenter.distance(currentCenter) * (isBackwards() ? -1 : 1);
-		double dlLeft = dLength - ((dAngle * getRobotWidth()) / 2);
-		double dlRight = dLength + ((dAngle * getRobotWidth()) / 2);
+		double dX = currentX - previousX;
+		double dY = currentY - previousY;
+		double dLength = Math.sqrt((dX * dX) + (dY * dY)) * (isBackwards() ? -1 : 1);
+		double dlLeft = dLength - ((dAngle * getKinematics().getRobotWidth()) / 2);
+		double dlRight = dLength + ((dAngle * getKinematics().getRobotWidth()) / 2);
 
 		// The time required to get to the next point
 		double dTime = Math.max(Math.abs(dlLeft), Math.abs(dlRight)) / getVCruise();
@@ -296,22 +266,18 @@ public class BezierCurve extends Path {
 				dTime = dLength / vDecelerating;
 			}
 		}
-//		System.out
-//			.println("acc: " + vAccelerating + " dec: " + vDecelerating + " vel: " + velocity + " velAct: " + dLength/dTime);
 
 		double velocityL = dlLeft / dTime;
 		double velocityR = dlRight / dTime;
 
-		State left = new State(previousLeft.getLength() + dlLeft, velocityL, acceleration);
-		State right = new State(previousRight.getLength() + dlRight, velocityR, acceleration);
-		Pose center = new Pose(currentCenter.getX(), currentCenter.getY(),
-			previousCenter.getAngle() + dAngle);
-		return new PathData(left, right, center, previousTime + dTime);
+		trajectory.add(previousTime + dTime, currentX, currentY, previousAngle + dAngle,
+			previousLeftLength + dlLeft, velocityL, acceleration,
+			previousRightLength + dlRight, velocityR, acceleration);
 	}
 
 	@Override
-	public final LinkedList<PathData> getPathData() {
-		return pathData;
+	public final Trajectory getTrajectory() {
+		return trajectory;
 	}
 
 	@Override
@@ -320,10 +286,8 @@ public class BezierCurve extends Path {
 			"startVelocity=" + startVelocity +
 			", endVelocity=" + endVelocity +
 			", startLCenter=" + startLCenter +
-			", pathData=" + pathData +
-			", curveLength=" + curveLength +
-			", coefficients=" + Arrays.toString(coefficients) +
-			", pathPoints=" + pathPoints +
+			", trajectory=" + trajectory +
+			", geometry=" + geometry +
 			"} " + super.toString();
 	}
 }
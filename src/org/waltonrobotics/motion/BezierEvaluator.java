@@ -0,0 +1,234 @@
+package org.waltonrobotics.motion;
+
+import java.util.List;
+import org.waltonrobotics.controller.Pose;
+
+/**
+ * Evaluates the position and the first derivative of a Bezier curve in a single pass without allocating. Curves up to
+ * degree 3 use Horner's method on the power basis of the curve, higher degrees use de Casteljau's algorithm. An
+ * evaluator keeps scratch space, so do not share one between threads.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+abstract class BezierEvaluator {
+
+	/**
+	 * Index of the x coordinate in the result array
+	 */
+	static final int X = 0;
+	/**
+	 * Index of the y coordinate in the result array
+	 */
+	static final int Y = 1;
+	/**
+	 * Index of the derivative of x with respect to t in the result array
+	 */
+	static final int DX = 2;
+	/**
+	 * Index of the derivative of y with respect to t in the result array
+	 */
+	static final int DY = 3;
+	/**
+	 * The length the result array needs to be
+	 */
+	static final int RESULT_SIZE = 4;
+
+	private final int degree;
+
+	private BezierEvaluator(int degree) {
+		this.degree = degree;
+	}
+
+	/**
+	 * Picks the evaluator for the degree of the curve
+	 *
+	 * @param controlPoints the control points of the curve
+	 * @return an evaluator for the curve
+	 */
+	static BezierEvaluator forControlPoints(List<Pose> controlPoints) {
+		int n = controlPoints.size();
+		double[] x = new double[n];
+		double[] y = new double[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = controlPoints.get(i).getX();
+			y[i] = controlPoints.get(i).getY();
+		}
+
+		switch (n - 1) {
+			case 0:
+				return new Constant(x, y);
+			case 1:
+				return new Linear(x, y);
+			case 2:
+				return new Quadratic(x, y);
+			case 3:
+				return new Cubic(x, y);
+			default:
+				return new DeCasteljau(x, y);
+		}
+	}
+
+	/**
+	 * @return the degree of the curve
+	 */
+	final int getDegree() {
+		return degree;
+	}
+
+	/**
+	 * Evaluates the curve
+	 *
+	 * @param t - percent along the curve
+	 * @param result - where to put x, y, dx/dt and dy/dt. Use the X, Y, DX and DY indices.
+	 */
+	abstract void evaluate(double t, double[] result);
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{" +
+			"degree=" + degree +
+			'}';
+	}
+
+	private static final class Constant extends BezierEvaluator {
+
+		private final double x;
+		private final double y;
+
+		Constant(double[] x, double[] y) {
+			super(0);
+			this.x = x[0];
+			this.y = y[0];
+		}
+
+		@Override
+		void evaluate(double t, double[] result) {
+			result[X] = x;
+			result[Y] = y;
+			result[DX] = 0;
+			result[DY] = 0;
+		}
+	}
+
+	private static final class Linear extends BezierEvaluator {
+
+		private final double x0;
+		private final double y0;
+		private final double x1;
+		private final double y1;
+
+		Linear(double[] x, double[] y) {
+			super(1);
+			x0 = x[0];
+			y0 = y[0];
+			x1 = x[1] - x[0];
+			y1 = y[1] - y[0];
+		}
+
+		@Override
+		void evaluate(double t, double[] result) {
+			result[X] = x0 + (t * x1);
+			result[Y] = y0 + (t * y1);
+			result[DX] = x1;
+			result[DY] = y1;
+		}
+	}
+
+	private static final class Quadratic extends BezierEvaluator {
+
+		private final double x0;
+		private final double y0;
+		private final double x1;
+		private final double y1;
+		private final double x2;
+		private final double y2;
+
+		Quadratic(double[] x, double[] y) {
+			super(2);
+			x0 = x[0];
+			y0 = y[0];
+			x1 = 2 * (x[1] - x[0]);
+			y1 = 2 * (y[1] - y[0]);
+			x2 = x[0] - (2 * x[1]) + x[2];
+			y2 = y[0] - (2 * y[1]) + y[2];
+		}
+
+		@Override
+		void evaluate(double t, double[] result) {
+			result[X] = x0 + (t * (x1 + (t * x2)));
+			result[Y] = y0 + (t * (y1 + (t * y2)));
+			result[DX] = x1 + (2 * t * x2);
+			result[DY] = y1 + (2 * t * y2);
+		}
+	}
+
+	private static final class Cubic extends BezierEvaluator {
+
+		private final double x0;
+		private final double y0;
+		private final double x1;
+		private final double y1;
+		private final double x2;
+		private final double y2;
+		private final double x3;
+		private final double y3;
+
+		Cubic(double[] x, double[] y) {
+			super(3);
+			x0 = x[0];
+			y0 = y[0];
+			x1 = 3 * (x[1] - x[0]);
+			y1 = 3 * (y[1] - y[0]);
+			x2 = 3 * (x[0] - (2 * x[1]) + x[2]);
+			y2 = 3 * (y[0] - (2 * y[1]) + y[2]);
+			x3 = (x[3] - x[0]) + (3 * (x[1] - x[2]));
+			y3 = (y[3] - y[0]) + (3 * (y[1] - y[2]));
+		}
+
+		@Override
+		void evaluate(double t, double[] result) {
+			result[X] = x0 + (t * (x1 + (t * (x2 + (t * x3)))));
+			result[Y] = y0 + (t * (y1 + (t * (y2 + (t * y3)))));
+			result[DX] = x1 + (t * ((2 * x2) + (3 * t * x3)));
+			result[DY] = y1 + (t * ((2 * y2) + (3 * t * y3)));
+		}
+	}
+
+	private static final class DeCasteljau extends BezierEvaluator {
+
+		private final double[] x;
+		private final double[] y;
+		private final double[] scratchX;
+		private final double[] scratchY;
+
+		DeCasteljau(double[] x, double[] y) {
+			super(x.length - 1);
+			this.x = x;
+			this.y = y;
+			scratchX = new double[x.length];
+			scratchY = new double[y.length];
+		}
+
+		@Override
+		void evaluate(double t, double[] result) {
+			int n = getDegree();
+			System.arraycopy(x, 0, scratchX, 0, x.length);
+			System.arraycopy(y, 0, scratchY, 0, y.length);
+
+			// Reduce until the two points of the degree 1 curve are left, they give the tangent
+			for (int level = n; level > 1; level--) {
+				for (int i = 0; i < level; i++) {
+					scratchX[i] += t * (scratchX[i + 1] - scratchX[i]);
+					scratchY[i] += t * (scratchY[i + 1] - scratchY[i]);
+				}
+			}
+
+			double dX = scratchX[1] - scratchX[0];
+			double dY = scratchY[1] - scratchY[0];
+			result[X] = scratchX[0] + (t * dX);
+			result[Y] = scratchY[0] + (t * dY);
+			result[DX] = n * dX;
+			result[DY] = n * dY;
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package org.waltonrobotics.motion;
+
+import java.util.List;
+import org.waltonrobotics.controller.Pose;
+
+/**
+ * The sampled points and length of a Bezier curve. This is the part of generating a curve that does not depend on the
+ * curve before it, so the geometry of every segment of a spline can be found at the same time.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+final class CurveGeometry {
+
+	private final double[] x;
+	private final double[] y;
+	private final double[] angle;
+	private final double length;
+
+	private CurveGeometry(double[] x, double[] y, double[] angle, double length) {
+		this.x = x;
+		this.y = y;
+		this.angle = angle;
+		this.length = length;
+	}
+
+	/**
+	 * Samples a curve at steps + 1 points
+	 *
+	 * @param controlPoints - the control points that define the curve
+	 * @param isBackwards - whether or not the robot drives the curve backwards
+	 * @param steps - the number of steps to divide the curve into
+	 * @param arcLengthParameterized - if the points should be evenly spaced in distance instead of in t
+	 * @return the geometry of the curve
+	 */
+	static CurveGeometry sample(List<Pose> controlPoints, boolean isBackwards, int steps,
+		boolean arcLengthParameterized) {
+		BezierEvaluator evaluator = BezierEvaluator.forControlPoints(controlPoints);
+		double[] point = new double[BezierEvaluator.RESULT_SIZE];
+		double[] x = new double[steps + 1];
+		double[] y = new double[steps + 1];
+		double[] angle = new double[steps + 1];
+
+		ArcLengthTable arcLengthTable = null;
+		if (arcLengthParameterized && (evaluator.getDegree() > 1)) {
+			arcLengthTable = new ArcLengthTable(evaluator, steps);
+			if (arcLengthTable.getLength() <= 0) {
+				arcLengthTable = null;
+			}
+		}
+
+		for (int i = 0; i <= steps; i++) {
+			double percentage;
+			if (arcLengthTable == null) {
+				percentage = i / (double) steps;
+			} else if (i == steps) {
+				percentage = 1;
+			} else {
+				percentage = arcLengthTable.getParameter((i * arcLengthTable.getLength()) / steps);
+			}
+			evaluator.evaluate(percentage, point);
+			x[i] = point[BezierEvaluator.X];
+			y[i] = point[BezierEvaluator.Y];
+			angle[i] = getAngle(point[BezierEvaluator.DX], point[BezierEvaluator.DY], isBackwards);
+		}
+
+		// Caluclates the length of the curve
+		double length = 0;
+		if (controlPoints.size() > 1) {
+			for (int i = 1; i <= steps; i++) {
+				double dX = x[i] - x[i - 1];
+				double dY = y[i] - y[i - 1];
+				length += Math.sqrt((dX * dX) + (dY * dY));
+			}
+		}
+		return new CurveGeometry(x, y, angle, length);
+	}
+
+	/**
+	 * @param dx - the derivative of x at the point
+	 * @param dy - the derivative of y at the point
+	 * @return angle at point
+	 */
+	private static double getAngle(double dx, double dy, boolean isBackwards) {
+		double angle = StrictMath.atan2(dy, dx);
+
+		if (isBackwards) {
+			angle += Math.PI;
+		}
+		angle %= (2 * Math.PI);
+
+		return angle;
+	}
+
+	/**
+	 * @return the number of steps the curve is divided into
+	 */
+	int getSteps() {
+		return x.length - 1;
+	}
+
+	double getX(int index) {
+		return x[index];
+	}
+
+	double getY(int index) {
+		return y[index];
+	}
+
+	double getAngle(int index) {
+		return angle[index];
+	}
+
+	/**
+	 * @return the length of the curve
+	 */
+	double getLength() {
+		return length;
+	}
+
+	@Override
+	public String toString() {
+		return "CurveGeometry{" +
+			"steps=" + getSteps() +
+			", length=" + length +
+			'}';
+	}
+}
@@ -1,6 +1,9 @@
 package org.waltonrobotics.motion;
 
+import java.util.Arrays;
+import org.waltonrobotics.controller.DriveKinematics;
 import org.waltonrobotics.controller.Pose;
+import org.waltonrobotics.controller.Trajectory;
 
 /**
  * <p>
@@ -29,6 +32,33 @@ public class Line extends BezierCurve {
 		super(vCruise, aMax, startVelocity, endVelocity, isBackwards, startPose, endPose);
 	}
 
+	/**
+	 * Be careful when using this. If your robot's angle is off, the MotionContoller will try to correct for it, so you
+	 * will not get a straight line.
+	 *
+	 * @param kinematics - the robot width and generation settings to make the line with
+	 * @param vCruise - the cruise velocity of the robot
+	 * @param aMax - the maximum acceleration of the robot
+	 * @param startVelocity - the start velocity
+	 * @param endVelocity - the end velocity
+	 * @param isBackwards - whether or not to move the robot backwards
+	 * @param startPose - the starting Pose. Angle doesn't matter
+	 * @param endPose - the ending Pose. Angle doesn't matter
+	 */
+	public Line(DriveKinematics kinematics, double vCruise, double aMax, double startVelocity, double endVelocity,
+		boolean isBackwards, Pose startPose, Pose endPose) {
+		super(kinematics, vCruise, aMax, startVelocity, endVelocity, isBackwards, Arrays.asList(startPose, endPose));
+	}
+
+	/**
+	 * @param trajectory - already generated samples for the line
+	 */
+	Line(DriveKinematics kinematics, double vCruise, double aMax, double startVelocity, double endVelocity,
+		boolean isBackwards, Pose startPose, Pose endPose, Trajectory trajectory) {
+		super(kinematics, vCruise, aMax, startVelocity, endVelocity, isBackwards, Arrays.asList(startPose, endPose),
+			trajectory);
+	}
+
 	/**
 	 * Be careful when using this. If your robot's angle is off, the MotionContoller will try to correct for it, so you
 	 * will not get a straight line.
@@ -0,0 +1,127 @@
+package org.waltonrobotics.motion;
+
+import java.nio.DoubleBuffer;
+import org.waltonrobotics.controller.Trajectory;
+
+/**
+ * A read only Trajectory that reads its samples straight out of the columns of a memory mapped trajectory file.
+ *
+ * @author Russell Newton, Walton Robotics
+ * @see TrajectoryFile
+ */
+final class MappedTrajectory extends Trajectory {
+
+	private final int size;
+	private final DoubleBuffer time;
+	private final DoubleBuffer x;
+	private final DoubleBuffer y;
+	private final DoubleBuffer angle;
+	private final DoubleBuffer leftLength;
+	private final DoubleBuffer leftVelocity;
+	private final DoubleBuffer leftAcceleration;
+	private final DoubleBuffer rightLength;
+	private final DoubleBuffer rightVelocity;
+	private final DoubleBuffer rightAcceleration;
+	private final double uniformTimeStep;
+
+	/**
+	 * @param isBackwards if the robot is travelling forwards or backwards
+	 * @param size the number of samples
+	 * @param columns the columns in the order of TrajectoryFile.COLUMN_COUNT
+	 */
+	MappedTrajectory(boolean isBackwards, int size, DoubleBuffer[] columns) {
+		super(0, isBackwards);
+		this.size = size;
+		time = columns[0];
+		x = columns[1];
+		y = columns[2];
+		angle = columns[3];
+		leftLength = columns[4];
+		leftVelocity = columns[5];
+		leftAcceleration = columns[6];
+		rightLength = columns[7];
+		rightVelocity = columns[8];
+		rightAcceleration = columns[9];
+		uniformTimeStep = findUniformTimeStep();
+		makeReadOnly();
+	}
+
+	/**
+	 * @return the time between samples if every sample is evenly spaced in time, NaN otherwise
+	 */
+	private double findUniformTimeStep() {
+		if (size < 2) {
+			return Double.NaN;
+		}
+		double timeStep = time.get(1) - time.get(0);
+		if (timeStep <= 0) {
+			return Double.NaN;
+		}
+		for (int i = 2; i < size; i++) {
+			if (!isSameTimeStep(time.get(i) - time.get(i - 1), timeStep)) {
+				return Double.NaN;
+			}
+		}
+		return timeStep;
+	}
+
+	@Override
+	public double getUniformTimeStep() {
+		return uniformTimeStep;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public double getTime(int index) {
+		return time.get(index);
+	}
+
+	@Override
+	public double getX(int index) {
+		return x.get(index);
+	}
+
+	@Override
+	public double getY(int index) {
+		return y.get(index);
+	}
+
+	@Override
+	public double getAngle(int index) {
+		return angle.get(index);
+	}
+
+	@Override
+	public double getLeftLength(int index) {
+		return leftLength.get(index);
+	}
+
+	@Override
+	public double getLeftVelocity(int index) {
+		return leftVelocity.get(index);
+	}
+
+	@Override
+	public double getLeftAcceleration(int index) {
+		return leftAcceleration.get(index);
+	}
+
+	@Override
+	public double getRightLength(int index) {
+		return rightLength.get(index);
+	}
+
+	@Override
+	public double getRightVelocity(int index) {
+		return rightVelocity.get(index);
+	}
+
+	@Override
+	public double getRightAcceleration(int index) {
+		return rightAcceleration.get(index);
+	}
+}
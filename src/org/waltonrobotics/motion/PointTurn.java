@@ -1,10 +1,9 @@
 package org.waltonrobotics.motion;
 
-import java.util.LinkedList;
+import org.waltonrobotics.controller.DriveKinematics;
 import org.waltonrobotics.controller.Path;
-import org.waltonrobotics.controller.PathData;
 import org.waltonrobotics.controller.Pose;
-import org.waltonrobotics.controller.State;
+import org.waltonrobotics.controller.Trajectory;
 
 public class PointTurn extends Path {
 
@@ -13,11 +12,31 @@ public class PointTurn extends Path {
 	private final double turnStep;
 	private final double vRotationMax;
 	private final double aRotationMax;
-	private final LinkedList<PathData> pathData;
+	private final Trajectory trajectory;
 
 	public PointTurn(double vRotationMax, double aRotationMax, Pose startPosition,
 		double endAngle) {
-		super(vRotationMax, aRotationMax, false,
+		this(DriveKinematics.getDefault(), vRotationMax, aRotationMax, startPosition, endAngle, null);
+	}
+
+	/**
+	 * @param kinematics - the robot width and generation settings to make the turn with
+	 * @param vRotationMax - the maximum velocity of the wheels
+	 * @param aRotationMax - the maximum acceleration of the wheels
+	 * @param startPosition - where the robot starts the turn
+	 * @param endAngle - the angle to turn to in radians
+	 */
+	public PointTurn(DriveKinematics kinematics, double vRotationMax, double aRotationMax, Pose startPosition,
+		double endAngle) {
+		this(kinematics, vRotationMax, aRotationMax, startPosition, endAngle, null);
+	}
+
+	/**
+	 * @param trajectory - already generated samples for the turn, or null to generate them
+	 */
+	PointTurn(DriveKinematics kinematics, double vRotationMax, double aRotationMax, Pose startPosition,
+		double endAngle, Trajectory trajectory) {
+		super(kinematics, vRotationMax, aRotationMax, false,
 			startPosition, new Pose(startPosition.getX(), startPosition.getY(), endAngle));
 		startPose = startPosition;
 		this.endAngle = endAngle;
@@ -27,23 +46,35 @@ public class PointTurn extends Path {
 		double turnAngle = this.endAngle - startPose.getAngle();
 		turnAngle = boundAngle(turnAngle);
 
-		turnStep = turnAngle / getPathNumberOfSteps();
-		pathData = new LinkedList<>();
-		generateData();
+		turnStep = turnAngle / getKinematics().getPathNumberOfSteps();
+		if (trajectory == null) {
+			this.trajectory = new Trajectory(getKinematics().getPathNumberOfSteps(), false);
+			startGeneration();
+		} else {
+			this.trajectory = trajectory;
+		}
 	}
 
-	private void generateData() {
-		pathData.add(getPathData(new PathData(startPose)));
-		for (int i = 1; i < getPathNumberOfSteps(); i++) {
-			pathData.add(getPathData(pathData.getLast()));
+	@Override
+	protected boolean generateNext() {
+		if (trajectory.isEmpty()) {
+			addData(startPose.getAngle(), 0, 0, 0);
+		} else {
+			int last = trajectory.size() - 1;
+			addData(trajectory.getAngle(last), trajectory.getLeftLength(last), trajectory.getRightLength(last),
+				trajectory.getTime(last));
 		}
+		return trajectory.size() < getKinematics().getPathNumberOfSteps();
 	}
 
-	private PathData getPathData(PathData previous) {
-
+	/**
+	 * Adds the sample that follows the previous sample to the Trajectory
+	 */
+	private void addData(double previousAngle, double previousLeftLength, double previousRightLength,
+		double previousTime) {
 		// estimate lengths each wheel will turn
-		double dlLeft = ((-turnStep * getRobotWidth()) / 2.0);
-		double dlRight = ((turnStep * getRobotWidth()) / 2.0);
+		double dlLeft = ((-turnStep * getKinematics().getRobotWidth()) / 2.0);
+		double dlRight = ((turnStep * getKinematics().getRobotWidth()) / 2.0);
 
 		// assuming one of the wheels will limit motion, calculate time this step will
 		// take
@@ -51,36 +82,29 @@ public class PointTurn extends Path {
 		double a = 0.0;
 
 		// assuming constant angular acceleration from/to zero angular speed
-		double omega = Math.abs(dlRight - dlLeft) / dt / getRobotWidth();
-		double thetaMidpoint = previous.getCenterPose().getAngle() + (0.5 * turnStep);
+		double omega = Math.abs(dlRight - dlLeft) / dt / getKinematics().getRobotWidth();
+		double thetaMidpoint = previousAngle + (0.5 * turnStep);
 
 		double omegaAccel = Math.sqrt(aRotationMax
 			* Math.abs(boundAngle(thetaMidpoint - startPose.getAngle())));
 		double omegaDecel = Math.sqrt(aRotationMax
 			* Math.abs(boundAngle(thetaMidpoint - endAngle)));
-//		System.out.println("OmegaAccel=" + omegaAccel);
-//         System.out.println(omega);
 		if ((omegaAccel < omega) && (omegaAccel < omegaDecel)) {
-			dt = Math.abs(dlRight - dlLeft) / omegaAccel / getRobotWidth();
+			dt = Math.abs(dlRight - dlLeft) / omegaAccel / getKinematics().getRobotWidth();
 		}
 
-//		System.out.println("OmegaDecel=" + omegaDecel);
 		if ((omegaDecel < omega) && (omegaDecel < omegaAccel)) {
-			dt = Math.abs(dlRight - dlLeft) / omegaDecel / getRobotWidth();
+			dt = Math.abs(dlRight - dlLeft) / omegaDecel / getKinematics().getRobotWidth();
 		}
-//        System.out.println(dt);
-
-		State left = new State(previous.getLeftState().getLength() + dlLeft, dlLeft / dt, a);
-		State right = new State(previous.getRightState().getLength() + dlRight, dlRight / dt, a);
-		Pose center = new Pose(startPose.getX(), startPose.getY(),
-			previous.getCenterPose().getAngle() + turnStep);
 
-		return new PathData(left, right, center, previous.getTime() + dt);
+		trajectory.add(previousTime + dt, startPose.getX(), startPose.getY(), previousAngle + turnStep,
+			previousLeftLength + dlLeft, dlLeft / dt, a,
+			previousRightLength + dlRight, dlRight / dt, a);
 	}
 
 	@Override
-	public LinkedList<PathData> getPathData() {
-		return pathData;
+	public Trajectory getTrajectory() {
+		return trajectory;
 	}
 
 	@Override
@@ -91,7 +115,7 @@ public class PointTurn extends Path {
 			", turnStep=" + turnStep +
 			", vRotationMax=" + vRotationMax +
 			", aRotationMax=" + aRotationMax +
-			", pathData=" + pathData +
+			", trajectory=" + trajectory +
 			"} " + super.toString();
 	}
 }
@@ -0,0 +1,59 @@
+package org.waltonrobotics.motion;
+
+import java.util.List;
+import org.waltonrobotics.controller.DriveKinematics;
+import org.waltonrobotics.controller.Path;
+import org.waltonrobotics.controller.Pose;
+import org.waltonrobotics.controller.Trajectory;
+
+/**
+ * <p>
+ * A Path whose samples were generated ahead of time, for example loaded from a trajectory file.
+ * </p>
+ *
+ * @author Russell Newton, Walton Robotics
+ * @see TrajectoryFile
+ */
+public class PrecomputedPath extends Path {
+
+	private final Trajectory trajectory;
+
+	/**
+	 * @param vCruise - the cruise velocity the path was generated with
+	 * @param aMax - the maximum acceleration the path was generated with
+	 * @param keyPoints - the points that defined the path
+	 * @param trajectory - the samples of the path, at least one
+	 */
+	public PrecomputedPath(double vCruise, double aMax, List<Pose> keyPoints, Trajectory trajectory) {
+		this(DriveKinematics.getDefault(), vCruise, aMax, keyPoints, trajectory);
+	}
+
+	/**
+	 * @param kinematics - the robot width and generation settings the path was generated with
+	 * @param vCruise - the cruise velocity the path was generated with
+	 * @param aMax - the maximum acceleration the path was generated with
+	 * @param keyPoints - the points that defined the path
+	 * @param trajectory - the samples of the path, at least one
+	 */
+	public PrecomputedPath(DriveKinematics kinematics, double vCruise, double aMax, List<Pose> keyPoints,
+		Trajectory trajectory) {
+		super(kinematics, vCruise, aMax, trajectory.isBackwards(), keyPoints);
+		// The MotionController needs a last sample to follow, so an empty path fails here instead of mid-match
+		if (trajectory.isEmpty()) {
+			throw new IllegalArgumentException("trajectory must have at least one sample");
+		}
+		this.trajectory = trajectory;
+	}
+
+	@Override
+	public final Trajectory getTrajectory() {
+		return trajectory;
+	}
+
+	@Override
+	public String toString() {
+		return "PrecomputedPath{" +
+			"trajectory=" + trajectory +
+			"} " + super.toString();
+	}
+}
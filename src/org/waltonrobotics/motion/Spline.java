@@ -3,13 +3,15 @@ package org.waltonrobotics.motion;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import org.waltonrobotics.controller.DriveKinematics;
 import org.waltonrobotics.controller.Path;
 import org.waltonrobotics.controller.PathData;
 import org.waltonrobotics.controller.Pose;
 import org.waltonrobotics.controller.State;
+import org.waltonrobotics.controller.Trajectory;
 
 /**
  * This path is a spline that will go through the set knots by stitching together several Bezier curves. By default, it
@@ -30,7 +32,10 @@ public class Spline extends Path {
 	private final double startVelocity;
 	private final double endVelocity;
 	private final List<List<Pose>> pathControlPoints;
-	private final LinkedList<PathData> pathData;
+	private final Trajectory trajectory;
+	private final PathData startPathData;
+	private final List<ForkJoinTask<CurveGeometry>> geometries;
+	private int nextSegment;
 
 	/**
 	 * Construct a spline. Note that the x axis is the direction the robot is facing if the start angle is 0
@@ -47,7 +52,37 @@ public class Spline extends Path {
 	public Spline(double vCruise, double aMax, double startVelocity, double endVelocity,
 		double startAngle, double endAngle, boolean isBackwards, double scaleStart, double scaleEnd,
 		List<Pose> knots) {
-		super(vCruise, aMax, isBackwards, knots);
+		this(DriveKinematics.getDefault(), vCruise, aMax, startVelocity, endVelocity, startAngle, endAngle,
+			isBackwards, scaleStart, scaleEnd, knots, null);
+	}
+
+	/**
+	 * Construct a spline. Note that the x axis is the direction the robot is facing if the start angle is 0
+	 *
+	 * @param kinematics - the robot width and generation settings to make the spline with
+	 * @param vCruise - max velocity
+	 * @param aMax - max acceleration
+	 * @param startVelocity - the starting velocity of the Path
+	 * @param endVelocity - the ending velocity of the Path
+	 * @param startAngle - the angle at the start of the motion (degrees)
+	 * @param endAngle - the angle at the end of the motion (degrees)
+	 * @param isBackwards - if the robot will be moving backwards, make this true
+	 * @param knots - the points you want the robot to drive through
+	 */
+	public Spline(DriveKinematics kinematics, double vCruise, double aMax, double startVelocity,
+		double endVelocity, double startAngle, double endAngle, boolean isBackwards, double scaleStart,
+		double scaleEnd, List<Pose> knots) {
+		this(kinematics, vCruise, aMax, startVelocity, endVelocity, startAngle, endAngle, isBackwards, scaleStart,
+			scaleEnd, knots, null);
+	}
+
+	/**
+	 * @param trajectory - already generated samples for the spline, or null to generate them
+	 */
+	Spline(DriveKinematics kinematics, double vCruise, double aMax, double startVelocity, double endVelocity,
+		double startAngle, double endAngle, boolean isBackwards, double scaleStart, double scaleEnd,
+		List<Pose> knots, Trajectory trajectory) {
+		super(kinematics, vCruise, aMax, isBackwards, knots);
 		this.startAngle = startAngle;
 		this.endAngle = endAngle;
 		startScale = scaleStart;
@@ -55,13 +90,20 @@ public class Spline extends Path {
 		this.endVelocity = endVelocity;
 		this.startVelocity = startVelocity;
 		pathControlPoints = computeControlPoints(getKeyPoints());
-		PathData startPathData = new PathData(new State(0, startVelocity, 0),
+		startPathData = new PathData(new State(0, startVelocity, 0),
 			new State(0, startVelocity, 0),
 			new Pose(pathControlPoints.get(0).get(0).getX(), pathControlPoints.get(0).get(0).getY(),
 				startAngle),
 			0);
-		pathData = new LinkedList<>();
-		stitchPathData(startPathData);
+		if (trajectory == null) {
+			this.trajectory = new Trajectory((pathControlPoints.size() * getKinematics().getPathNumberOfSteps()) + 1,
+				isBackwards);
+			geometries = sampleSegments();
+			startGeneration();
+		} else {
+			this.trajectory = trajectory;
+			geometries = null;
+		}
 	}
 
 	public Spline(double vCruise, double aMax, double startVelocity, double endVelocity,
@@ -173,7 +215,7 @@ public class Spline extends Path {
 			0.5 * (knots.get(degree).getY() + points1[degree - 1].getY()));
 		List<List<Pose>> controlPoints = new ArrayList<>(degree);
 		for (int i = 0; i < degree; i++) {
-			List<Pose> segmentControlPoints = new ArrayList<>(getPathNumberOfSteps());
+			List<Pose> segmentControlPoints = new ArrayList<>(getKinematics().getPathNumberOfSteps());
 			points1[0] = points1[0].rotate(knots.get(0), startAngle, isBackwards(), startScale);
 			points2[degree - 1] = points2[degree - 1]
 				.rotate(knots.get(knots.size() - 1), endAngle, !isBackwards(), endScale);
@@ -185,34 +227,65 @@ public class Spline extends Path {
 	}
 
 	/**
-	 * Stitches the bezier curve path data to make the single spline
+	 * Starts sampling the points of every segment in parallel. Only the time and velocity profile depends on the
+	 * segment before it, so that is left for generateNext().
 	 *
-	 * @param startPathData - requires the initial pathData
+	 * @return the tasks sampling each segment
+	 */
+	private List<ForkJoinTask<CurveGeometry>> sampleSegments() {
+		boolean isBackwards = isBackwards();
+		DriveKinematics kinematics = getKinematics();
+		int steps = kinematics.getPathNumberOfSteps();
+		boolean arcLengthParameterized = kinematics.isArcLengthParameterized();
+
+		List<ForkJoinTask<CurveGeometry>> tasks = new ArrayList<>(pathControlPoints.size());
+		for (List<Pose> controlPoints : pathControlPoints) {
+			tasks.add(ForkJoinPool.commonPool().submit(
+				() -> CurveGeometry.sample(controlPoints, isBackwards, steps, arcLengthParameterized)));
+		}
+		return tasks;
+	}
+
+	/**
+	 * Stitches the path data of the next bezier curve onto the spline. The task sampling the segment is let go once it
+	 * is joined, so a spline waiting in the queue does not keep the sampled points.
 	 */
-	private void stitchPathData(PathData startPathData) {
-		double nextStartVelocity;
-		double nextEndVelocity;
-		PathData nextStartPathData = startPathData;
-		pathData.add(startPathData);
-		ListIterator<List<Pose>> iterator = pathControlPoints.listIterator();
-		while (iterator.hasNext()) {
-			BezierCurve curve;
-			nextStartVelocity = (iterator.nextIndex() == 0) ? startVelocity : getVCruise();
-			nextEndVelocity =
-				(iterator.nextIndex() == (pathControlPoints.size() - 1)) ? endVelocity
-					: getVCruise();
-			curve = new BezierCurve(getVCruise(), getAMax(), nextStartVelocity, nextEndVelocity,
-				isBackwards(),
-				nextStartPathData,
-				iterator.next());
-			pathData.addAll(curve.getPathData());
-			nextStartPathData = pathData.get(pathData.size() - 1);
+	@Override
+	protected final boolean generateNext() {
+		PathData nextStartPathData;
+		if (trajectory.isEmpty()) {
+			trajectory.add(startPathData);
+			nextStartPathData = startPathData;
+		} else {
+			nextStartPathData = trajectory.getPathData(trajectory.size() - 1);
+		}
+
+		int segment = nextSegment;
+		if (segment >= pathControlPoints.size()) {
+			return false;
 		}
+		double nextStartVelocity = (segment == 0) ? startVelocity : getVCruise();
+		double nextEndVelocity =
+			(segment == (pathControlPoints.size() - 1)) ? endVelocity
+				: getVCruise();
+		CurveGeometry geometry = geometries.get(segment).join();
+		geometries.set(segment, null);
+		BezierCurve curve = new BezierCurve(getKinematics(), getVCruise(), getAMax(), nextStartVelocity,
+			nextEndVelocity,
+			isBackwards(),
+			nextStartPathData,
+			pathControlPoints.get(segment),
+			geometry,
+			null);
+		curve.generateAll();
+		trajectory.addAll(curve.getTrajectory());
+		nextSegment = segment + 1;
+		return nextSegment < pathControlPoints.size();
 	}
 
 	@Override
-	public final LinkedList<PathData> getPathData() {
-		return pathData;
+	public final Trajectory getTrajectory() {
+		return trajectory;
 	}
 
 	@Override
@@ -225,7 +298,7 @@ public class Spline extends Path {
 			", startVelocity=" + startVelocity +
 			", endVelocity=" + endVelocity +
 			", pathControlPoints=" + pathControlPoints +
-			", pathData=" + pathData +
+			", trajectory=" + trajectory +
 			"} " + super.toString();
 	}
 }
@@ -0,0 +1,368 @@
+package org.waltonrobotics.motion;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.waltonrobotics.controller.DriveKinematics;
+import org.waltonrobotics.controller.Path;
+import org.waltonrobotics.controller.Pose;
+import org.waltonrobotics.controller.Trajectory;
+
+/**
+ * Shares the samples of paths that are built from the same inputs. Paths are keyed on everything that changes their
+ * samples: the path type, the key points, the velocities and accelerations, the robot width, the number of steps and
+ * the sampling mode. A hit returns a new path that reuses the read only Trajectory of the first one, so each path
+ * still has its own finished state. The least recently used entries are evicted once the cache is full.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public final class TrajectoryCache {
+
+	/**
+	 * The number of trajectories the shared cache holds unless changed
+	 */
+	public static final int DEFAULT_CAPACITY = 32;
+
+	private static final TrajectoryCache instance = new TrajectoryCache(DEFAULT_CAPACITY);
+
+	private static final int SPLINE = 0;
+	private static final int LINE = 1;
+	private static final int POINT_TURN = 2;
+	private static final int SETTINGS_SIZE = 3;
+
+	private final Map<Key, CachedTrajectory> entries;
+	private int capacity;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * @param capacity the maximum number of trajectories to hold
+	 */
+	public TrajectoryCache(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1");
+		}
+		this.capacity = capacity;
+		entries = new LinkedHashMap<Key, CachedTrajectory>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, CachedTrajectory> eldest) {
+				if (size() > TrajectoryCache.this.capacity) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @return the cache shared by the whole robot program
+	 */
+	public static TrajectoryCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @return a Spline with the given inputs and the default DriveKinematics, reusing the samples of an identical
+	 * spline if there is one
+	 * @see Spline
+	 */
+	public Spline getSpline(double vCruise, double aMax, double startVelocity, double endVelocity,
+		double startAngle, double endAngle, boolean isBackwards, double startScale, double endScale,
+		List<Pose> knots) {
+		return getSpline(DriveKinematics.getDefault(), vCruise, aMax, startVelocity, endVelocity, startAngle,
+			endAngle, isBackwards, startScale, endScale, knots);
+	}
+
+	/**
+	 * @return a Spline with the given inputs, reusing the samples of an identical spline if there is one
+	 * @see Spline
+	 */
+	public Spline getSpline(DriveKinematics kinematics, double vCruise, double aMax, double startVelocity,
+		double endVelocity, double startAngle, double endAngle, boolean isBackwards, double startScale,
+		double endScale, List<Pose> knots) {
+		double[] values = new double[SETTINGS_SIZE + 9 + (knots.size() * 3)];
+		int i = putSettings(values, kinematics);
+		values[i++] = vCruise;
+		values[i++] = aMax;
+		values[i++] = startVelocity;
+		values[i++] = endVelocity;
+		values[i++] = startAngle;
+		values[i++] = endAngle;
+		values[i++] = isBackwards ? 1 : 0;
+		values[i++] = startScale;
+		values[i++] = endScale;
+		putPoses(values, i, knots);
+		Key key = new Key(SPLINE, values);
+
+		Trajectory trajectory = lookup(key);
+		Spline spline = new Spline(kinematics, vCruise, aMax, startVelocity, endVelocity, startAngle, endAngle,
+			isBackwards, startScale, endScale, knots, trajectory);
+		if (trajectory == null) {
+			store(key, spline);
+		}
+		return spline;
+	}
+
+	/**
+	 * @return a Line with the given inputs and the default DriveKinematics, reusing the samples of an identical line
+	 * if there is one
+	 * @see Line
+	 */
+	public Line getLine(double vCruise, double aMax, double startVelocity, double endVelocity,
+		boolean isBackwards, Pose startPose, Pose endPose) {
+		return getLine(DriveKinematics.getDefault(), vCruise, aMax, startVelocity, endVelocity, isBackwards,
+			startPose, endPose);
+	}
+
+	/**
+	 * @return a Line with the given inputs, reusing the samples of an identical line if there is one
+	 * @see Line
+	 */
+	public Line getLine(DriveKinematics kinematics, double vCruise, double aMax, double startVelocity,
+		double endVelocity, boolean isBackwards, Pose startPose, Pose endPose) {
+		double[] values = new double[SETTINGS_SIZE + 5 + 6];
+		int i = putSettings(values, kinematics);
+		values[i++] = vCruise;
+		values[i++] = aMax;
+		values[i++] = startVelocity;
+		values[i++] = endVelocity;
+		values[i++] = isBackwards ? 1 : 0;
+		putPoses(values, i, Arrays.asList(startPose, endPose));
+		Key key = new Key(LINE, values);
+
+		Trajectory trajectory = lookup(key);
+		Line line = new Line(kinematics, vCruise, aMax, startVelocity, endVelocity, isBackwards, startPose, endPose,
+			trajectory);
+		if (trajectory == null) {
+			store(key, line);
+		}
+		return line;
+	}
+
+	/**
+	 * @return a PointTurn with the given inputs and the default DriveKinematics, reusing the samples of an identical
+	 * turn if there is one
+	 * @see PointTurn
+	 */
+	public PointTurn getPointTurn(double vRotationMax, double aRotationMax, Pose startPosition, double endAngle) {
+		return getPointTurn(DriveKinematics.getDefault(), vRotationMax, aRotationMax, startPosition, endAngle);
+	}
+
+	/**
+	 * @return a PointTurn with the given inputs, reusing the samples of an identical turn if there is one
+	 * @see PointTurn
+	 */
+	public PointTurn getPointTurn(DriveKinematics kinematics, double vRotationMax, double aRotationMax,
+		Pose startPosition, double endAngle) {
+		double[] values = new double[SETTINGS_SIZE + 3 + 3];
+		int i = putSettings(values, kinematics);
+		values[i++] = vRotationMax;
+		values[i++] = aRotationMax;
+		values[i++] = endAngle;
+		putPoses(values, i, Arrays.asList(startPosition));
+		Key key = new Key(POINT_TURN, values);
+
+		Trajectory trajectory = lookup(key);
+		PointTurn pointTurn = new PointTurn(kinematics, vRotationMax, aRotationMax, startPosition, endAngle,
+			trajectory);
+		if (trajectory == null) {
+			store(key, pointTurn);
+		}
+		return pointTurn;
+	}
+
+	/**
+	 * Adds the generation settings every path depends on
+	 *
+	 * @return the index after the settings
+	 */
+	private static int putSettings(double[] values, DriveKinematics kinematics) {
+		values[0] = kinematics.getRobotWidth();
+		values[1] = kinematics.getPathNumberOfSteps();
+		values[2] = kinematics.isArcLengthParameterized() ? 1 : 0;
+		return SETTINGS_SIZE;
+	}
+
+	private static void putPoses(double[] values, int index, List<Pose> poses) {
+		for (Pose pose : poses) {
+			values[index++] = pose.getX();
+			values[index++] = pose.getY();
+			values[index++] = pose.getAngle();
+		}
+	}
+
+	/**
+	 * @return the shared samples for the key, or null if they are not cached yet
+	 */
+	private synchronized Trajectory lookup(Key key) {
+		CachedTrajectory entry = entries.get(key);
+		if (entry != null) {
+			entry.promote();
+			if (entry.trajectory != null) {
+				hits++;
+				return entry.trajectory;
+			}
+		}
+		misses++;
+		return null;
+	}
+
+	/**
+	 * Remembers a newly built path. If it is still being streamed, its samples are shared once it is fully generated.
+	 * An identical path that is already being streamed is kept unless its generation was cancelled.
+	 */
+	private synchronized void store(Key key, Path path) {
+		CachedTrajectory existing = entries.get(key);
+		if ((existing != null) && (existing.source != null) && !existing.source.isGenerationCancelled()) {
+			return;
+		}
+		CachedTrajectory entry = new CachedTrajectory(path);
+		entry.promote();
+		entries.put(key, entry);
+	}
+
+	/**
+	 * @return how many lookups reused cached samples
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return how many lookups had to generate new samples
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return how many trajectories have been evicted to stay under the capacity
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Sets the hit, miss and eviction counters back to 0
+	 */
+	public synchronized void resetCounters() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	/**
+	 * @return the number of trajectories in the cache
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the maximum number of trajectories the cache holds
+	 */
+	public synchronized int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @param capacity the new maximum number of trajectories to hold. Least recently used ones are evicted.
+	 */
+	public synchronized void setCapacity(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1");
+		}
+		this.capacity = capacity;
+		Iterator<CachedTrajectory> iterator = entries.values().iterator();
+		while (entries.size() > capacity) {
+			iterator.next();
+			iterator.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Removes every trajectory from the cache
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "TrajectoryCache{" +
+			"size=" + entries.size() +
+			", capacity=" + capacity +
+			", hits=" + hits +
+			", misses=" + misses +
+			", evictions=" + evictions +
+			'}';
+	}
+
+	/**
+	 * The canonical form of the inputs of a path
+	 */
+	private static final class Key {
+
+		private final int type;
+		private final long[] bits;
+		private final long hash;
+
+		Key(int type, double[] values) {
+			this.type = type;
+			bits = new long[values.length];
+			long hash = 0xcbf29ce484222325L ^ type;
+			for (int i = 0; i < values.length; i++) {
+				// Adding 0.0 turns -0.0 into 0.0 so both give the same key
+				bits[i] = Double.doubleToLongBits(values[i] + 0.0);
+				hash = (hash ^ bits[i]) * 0x100000001b3L;
+			}
+			this.hash = hash ^ (hash >>> 32);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) o;
+			return (type == key.type) && (hash == key.hash) && Arrays.equals(bits, key.bits);
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) hash;
+		}
+	}
+
+	/**
+	 * Holds either the shared samples or the path that is still generating them
+	 */
+	private static final class CachedTrajectory {
+
+		private Path source;
+		private Trajectory trajectory;
+
+		CachedTrajectory(Path source) {
+			this.source = source;
+		}
+
+		/**
+		 * Shares the samples of the source path once it is fully generated
+		 */
+		void promote() {
+			if ((trajectory == null) && (source != null) && source.isGenerated()) {
+				trajectory = source.getTrajectory();
+				trajectory.makeReadOnly();
+				source = null;
+			}
+		}
+	}
+}
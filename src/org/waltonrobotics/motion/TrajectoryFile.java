@@ -0,0 +1,199 @@
+package org.waltonrobotics.motion;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.waltonrobotics.controller.DriveKinematics;
+import org.waltonrobotics.controller.Path;
+import org.waltonrobotics.controller.Pose;
+import org.waltonrobotics.controller.Trajectory;
+
+/**
+ * Reads and writes paths in a compact binary file so that they can be generated on a computer and loaded on the robot.
+ * Loading memory maps the file and reads the samples straight out of it without copying them.
+ * <br>
+ * The file is big endian and laid out as:
+ * <ul>
+ * <li>header: magic (int), version (int), flags (int), sample count (int), column count (int), data offset (int)</li>
+ * <li>path parameters: vCruise, aMax, robot width (doubles), path number of steps (int), key point count (int), then
+ * x, y and angle (doubles) for every key point</li>
+ * <li>padding up to the data offset, which is a multiple of 8</li>
+ * <li>sample data, one column after another: time, x, y, angle, left length, left velocity, left acceleration, right
+ * length, right velocity, right acceleration</li>
+ * </ul>
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public final class TrajectoryFile {
+
+	/**
+	 * "WRTJ" in ASCII
+	 */
+	public static final int MAGIC = 0x5752544A;
+	public static final int VERSION = 1;
+	static final int COLUMN_COUNT = 10;
+
+	private static final int FLAG_BACKWARDS = 1;
+	private static final int FLAG_ARC_LENGTH_PARAMETERIZED = 2;
+	private static final int HEADER_SIZE = 6 * Integer.BYTES;
+	private static final int PARAMETERS_SIZE = (3 * Double.BYTES) + (2 * Integer.BYTES);
+	private static final int KEY_POINT_SIZE = 3 * Double.BYTES;
+
+	private TrajectoryFile() {
+	}
+
+	/**
+	 * Writes a path to a file. Streamed paths are fully generated first.
+	 *
+	 * @param path the path to save
+	 * @param file where to save it
+	 * @throws IOException if the file could not be written
+	 */
+	public static void write(Path path, File file) throws IOException {
+		path.generateAll();
+		Trajectory trajectory = path.getTrajectory();
+		List<Pose> keyPoints = path.getKeyPoints();
+		int size = trajectory.size();
+
+		int dataOffset = align(HEADER_SIZE + PARAMETERS_SIZE + (keyPoints.size() * KEY_POINT_SIZE));
+		ByteBuffer buffer = ByteBuffer.allocate(dataOffset + (COLUMN_COUNT * size * Double.BYTES));
+
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		int flags = trajectory.isBackwards() ? FLAG_BACKWARDS : 0;
+		if (path.getKinematics().isArcLengthParameterized()) {
+			flags |= FLAG_ARC_LENGTH_PARAMETERIZED;
+		}
+		buffer.putInt(flags);
+		buffer.putInt(size);
+		buffer.putInt(COLUMN_COUNT);
+		buffer.putInt(dataOffset);
+
+		buffer.putDouble(path.getVCruise());
+		buffer.putDouble(path.getAMax());
+		buffer.putDouble(path.getKinematics().getRobotWidth());
+		buffer.putInt(path.getKinematics().getPathNumberOfSteps());
+		buffer.putInt(keyPoints.size());
+		for (Pose keyPoint : keyPoints) {
+			buffer.putDouble(keyPoint.getX());
+			buffer.putDouble(keyPoint.getY());
+			buffer.putDouble(keyPoint.getAngle());
+		}
+
+		buffer.position(dataOffset);
+		DoubleBuffer data = buffer.asDoubleBuffer();
+		for (int i = 0; i < size; i++) {
+			data.put(trajectory.getTime(i));
+		}
+		for (int i = 0; i < size; i++) {
+			data.put(trajectory.getX(i));
+		}
+		for (int i = 0; i < size; i++) {
+			data.put(trajectory.getY(i));
+		}
+		for (int i = 0; i < size; i++) {
+			data.put(trajectory.getAngle(i));
+		}
+		for (int i = 0; i < size; i++) {
+			data.put(trajectory.getLeftLength(i));
+		}
+		for (int i = 0; i < size; i++) {
+			data.put(trajectory.getLeftVelocity(i));
+		}
+		for (int i = 0; i < size; i++) {
+			data.put(trajectory.getLeftAcceleration(i));
+		}
+		for (int i = 0; i < size; i++) {
+			data.put(trajectory.getRightLength(i));
+		}
+		for (int i = 0; i < size; i++) {
+			data.put(trajectory.getRightVelocity(i));
+		}
+		for (int i = 0; i < size; i++) {
+			data.put(trajectory.getRightAcceleration(i));
+		}
+
+		buffer.rewind();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+			StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Memory maps a trajectory file. The samples are read from the mapped file as they are used.
+	 *
+	 * @param file the file to load
+	 * @return a path with the samples in the file
+	 * @throws IOException if the file could not be read or is not a trajectory file
+	 */
+	public static PrecomputedPath load(File file) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		try {
+			if ((buffer.remaining() < (HEADER_SIZE + PARAMETERS_SIZE)) || (buffer.getInt() != MAGIC)) {
+				throw new IOException(file + " is not a trajectory file");
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new IOException(file + " has trajectory file version " + version + ", expected " + VERSION);
+			}
+			int flags = buffer.getInt();
+			int size = buffer.getInt();
+			int columnCount = buffer.getInt();
+			int dataOffset = buffer.getInt();
+
+			double vCruise = buffer.getDouble();
+			double aMax = buffer.getDouble();
+			double robotWidth = buffer.getDouble();
+			int pathNumberOfSteps = buffer.getInt();
+			int keyPointCount = buffer.getInt();
+
+			long minDataOffset = HEADER_SIZE + PARAMETERS_SIZE + ((long) keyPointCount * KEY_POINT_SIZE);
+			long dataEnd = dataOffset + ((long) COLUMN_COUNT * size * Double.BYTES);
+			if ((columnCount != COLUMN_COUNT) || (size < 1) || (keyPointCount < 0) || (dataOffset < minDataOffset)
+				|| (buffer.capacity() < dataEnd)) {
+				throw new IOException(file + " is truncated or has an unexpected layout");
+			}
+
+			List<Pose> keyPoints = new ArrayList<>(keyPointCount);
+			for (int i = 0; i < keyPointCount; i++) {
+				keyPoints.add(new Pose(buffer.getDouble(), buffer.getDouble(), buffer.getDouble()));
+			}
+
+			// The checks above keep every offset within the mapped file, so they fit in an int
+			DoubleBuffer[] columns = new DoubleBuffer[COLUMN_COUNT];
+			int columnSize = size * Double.BYTES;
+			for (int i = 0; i < COLUMN_COUNT; i++) {
+				buffer.limit(dataOffset + ((i + 1) * columnSize));
+				buffer.position(dataOffset + (i * columnSize));
+				columns[i] = buffer.slice().asDoubleBuffer();
+			}
+
+			MappedTrajectory trajectory = new MappedTrajectory((flags & FLAG_BACKWARDS) != 0, size, columns);
+			DriveKinematics kinematics = new DriveKinematics(robotWidth, Math.max(pathNumberOfSteps, 1), false,
+				(flags & FLAG_ARC_LENGTH_PARAMETERIZED) != 0);
+			// Building the path checks the parameters too, for example that vCruise and aMax are not 0
+			return new PrecomputedPath(kinematics, vCruise, aMax, keyPoints, trajectory);
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new IOException(file + " is truncated or has an unexpected layout", e);
+		}
+	}
+
+	private static int align(int offset) {
+		return (offset + (Double.BYTES - 1)) & ~(Double.BYTES - 1);
+	}
+}
@@ -0,0 +1,111 @@
+package org.waltonrobotics.simulation;
+
+/**
+ * The robot width, gains and limits of a drivetrain, as returned by the AbstractDrivetrain getters. It never changes,
+ * so the same gains can be given to many simulated drivetrains.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public final class DrivetrainGains {
+
+	private final double robotWidth;
+	private final double kV;
+	private final double kAcc;
+	private final double kK;
+	private final double kS;
+	private final double kAng;
+	private final double kL;
+	private final double iLag;
+	private final double iAng;
+	private final double maxVelocity;
+	private final double maxAcceleration;
+
+	/**
+	 * @param robotWidth - the width of the robot from the outside of each wheel
+	 * @param kV - the velocity constant
+	 * @param kAcc - the acceleration constant
+	 * @param kK - the constant boost
+	 * @param kS - the steering constant
+	 * @param kAng - the angle constant
+	 * @param kL - the lag constant
+	 * @param iLag - the integral lag constant
+	 * @param iAng - the integral angle constant
+	 * @param maxVelocity - the max velocity the robot can achieve
+	 * @param maxAcceleration - the max acceleration the robot can achieve
+	 */
+	public DrivetrainGains(double robotWidth, double kV, double kAcc, double kK, double kS, double kAng, double kL,
+		double iLag, double iAng, double maxVelocity, double maxAcceleration) {
+		this.robotWidth = robotWidth;
+		this.kV = kV;
+		this.kAcc = kAcc;
+		this.kK = kK;
+		this.kS = kS;
+		this.kAng = kAng;
+		this.kL = kL;
+		this.iLag = iLag;
+		this.iAng = iAng;
+		this.maxVelocity = maxVelocity;
+		this.maxAcceleration = maxAcceleration;
+	}
+
+	public double getRobotWidth() {
+		return robotWidth;
+	}
+
+	public double getKV() {
+		return kV;
+	}
+
+	public double getKAcc() {
+		return kAcc;
+	}
+
+	public double getKK() {
+		return kK;
+	}
+
+	public double getKS() {
+		return kS;
+	}
+
+	public double getKAng() {
+		return kAng;
+	}
+
+	public double getKL() {
+		return kL;
+	}
+
+	public double getILag() {
+		return iLag;
+	}
+
+	public double getIAng() {
+		return iAng;
+	}
+
+	public double getMaxVelocity() {
+		return maxVelocity;
+	}
+
+	public double getMaxAcceleration() {
+		return maxAcceleration;
+	}
+
+	@Override
+	public String toString() {
+		return "DrivetrainGains{" +
+			"robotWidth=" + robotWidth +
+			", kV=" + kV +
+			", kAcc=" + kAcc +
+			", kK=" + kK +
+			", kS=" + kS +
+			", kAng=" + kAng +
+			", kL=" + kL +
+			", iLag=" + iLag +
+			", iAng=" + iAng +
+			", maxVelocity=" + maxVelocity +
+			", maxAcceleration=" + maxAcceleration +
+			'}';
+	}
+}
@@ -0,0 +1,108 @@
+package org.waltonrobotics.simulation;
+
+import org.waltonrobotics.MotionLogger;
+import org.waltonrobotics.controller.DriveKinematics;
+
+/**
+ * A SimulatedDrivetrain that takes its robot width, gains and limits as a constructor argument, so tuning with
+ * different gains does not need another subclass.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public class FixedGainsDrivetrain extends SimulatedDrivetrain {
+
+	private final DrivetrainGains gains;
+
+	/**
+	 * @param gains - the robot width, gains and limits to simulate with
+	 * @param motionLogger - the MotionLogger to log to
+	 */
+	public FixedGainsDrivetrain(DrivetrainGains gains, MotionLogger motionLogger) {
+		super(motionLogger, newKinematics(gains));
+		this.gains = gains;
+	}
+
+	/**
+	 * @param gains - the robot width, gains and limits to simulate with
+	 */
+	public FixedGainsDrivetrain(DrivetrainGains gains) {
+		this(gains, new MotionLogger(""));
+	}
+
+	/**
+	 * The MotionController is made before the gains field is set, so it is given the robot width this way
+	 */
+	private static DriveKinematics newKinematics(DrivetrainGains gains) {
+		if (gains == null) {
+			throw new IllegalArgumentException("gains must not be null");
+		}
+		return new DriveKinematics(gains.getRobotWidth());
+	}
+
+	public final DrivetrainGains getGains() {
+		return gains;
+	}
+
+	@Override
+	public double getRobotWidth() {
+		return gains.getRobotWidth();
+	}
+
+	@Override
+	public double getKV() {
+		return gains.getKV();
+	}
+
+	@Override
+	public double getKAcc() {
+		return gains.getKAcc();
+	}
+
+	@Override
+	public double getKK() {
+		return gains.getKK();
+	}
+
+	@Override
+	public double getKS() {
+		return gains.getKS();
+	}
+
+	@Override
+	public double getKAng() {
+		return gains.getKAng();
+	}
+
+	@Override
+	public double getKL() {
+		return gains.getKL();
+	}
+
+	@Override
+	public double getILag() {
+		return gains.getILag();
+	}
+
+	@Override
+	public double getIAng() {
+		return gains.getIAng();
+	}
+
+	@Override
+	public double getMaxVelocity() {
+		return gains.getMaxVelocity();
+	}
+
+	@Override
+	public double getMaxAcceleration() {
+		return gains.getMaxAcceleration();
+	}
+
+	@Override
+	public String toString() {
+		return "FixedGainsDrivetrain{" +
+			"gains=" + gains +
+			", " + super.toString() +
+			'}';
+	}
+}
@@ -0,0 +1,226 @@
+package org.waltonrobotics.simulation;
+
+import org.waltonrobotics.AbstractDrivetrain;
+import org.waltonrobotics.MotionLogger;
+import org.waltonrobotics.controller.DriveKinematics;
+import org.waltonrobotics.controller.MotionController;
+import org.waltonrobotics.controller.Path;
+import org.waltonrobotics.controller.Pose;
+import org.waltonrobotics.controller.RobotPair;
+
+/**
+ * <p>
+ * A drivetrain that is simulated instead of read from encoders, for tuning and load testing the MotionController off
+ * the robot. Each side is a first order motor: its velocity moves toward power * max velocity with the motor time
+ * constant, and its encoder length is the integral of that velocity.
+ * </p>
+ * <p>
+ * The gains and the robot width are left to a subclass. FixedGainsDrivetrain takes them as a constructor argument.
+ * The MotionController reads the gains each time a motion starts, but it needs the robot width while the
+ * AbstractDrivetrain is being constructed, before any field of a subclass is set, so a subclass that does not return
+ * a constant should pass its DriveKinematics to the constructor. Off the robot, use the headless Subsystem and Command
+ * in the benchmarks folder instead of WPILib.
+ * </p>
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public abstract class SimulatedDrivetrain extends AbstractDrivetrain {
+
+	/**
+	 * The motor time constant, in seconds, unless changed
+	 */
+	public static final double DEFAULT_TIME_CONSTANT = 0.1;
+	/**
+	 * The simulation step, in seconds. This is the period of the MotionController.
+	 */
+	public static final double DEFAULT_PERIOD = 0.005;
+
+	private double motorTimeConstant = DEFAULT_TIME_CONSTANT;
+	private double period = DEFAULT_PERIOD;
+	private double time;
+	private double leftLength;
+	private double rightLength;
+	private double leftVelocity;
+	private double rightVelocity;
+	private double leftPower;
+	private double rightPower;
+
+	protected SimulatedDrivetrain(MotionLogger motionLogger) {
+		super(motionLogger);
+	}
+
+	/**
+	 * @param kinematics - the robot width and generation settings of the simulated robot
+	 */
+	protected SimulatedDrivetrain(MotionLogger motionLogger, DriveKinematics kinematics) {
+		super(motionLogger, kinematics);
+	}
+
+	protected SimulatedDrivetrain() {
+		super();
+	}
+
+	@Override
+	public final RobotPair getWheelPositions() {
+		return new RobotPair(leftLength, rightLength, time);
+	}
+
+	@Override
+	public final void getWheelPositions(double[] wheelPositions) {
+		wheelPositions[RobotPair.LEFT] = leftLength;
+		wheelPositions[RobotPair.RIGHT] = rightLength;
+		wheelPositions[RobotPair.TIME] = time;
+	}
+
+	/**
+	 * Sets the encoders and the wheels back to 0. The simulated time keeps going.
+	 */
+	@Override
+	public void reset() {
+		leftLength = 0;
+		rightLength = 0;
+		leftVelocity = 0;
+		rightVelocity = 0;
+		leftPower = 0;
+		rightPower = 0;
+	}
+
+	/**
+	 * Powers are clamped to [-1, 1] like a motor controller
+	 */
+	@Override
+	public final void setSpeeds(double leftPower, double rightPower) {
+		this.leftPower = Math.max(-1, Math.min(1, leftPower));
+		this.rightPower = Math.max(-1, Math.min(1, rightPower));
+	}
+
+	@Override
+	public void setEncoderDistancePerPulse() {
+	}
+
+	@Override
+	protected void initDefaultCommand() {
+	}
+
+	/**
+	 * Moves the simulation forward with the last powers that were set. The motor model is integrated exactly, so any
+	 * step size is stable.
+	 *
+	 * @param dt - how many seconds to simulate
+	 */
+	public final void simulate(double dt) {
+		double decay = (motorTimeConstant > 0) ? StrictMath.exp(-dt / motorTimeConstant) : 0;
+		double maxVelocity = getMaxVelocity();
+
+		double leftTarget = leftPower * maxVelocity;
+		leftLength += (leftTarget * dt) + ((leftVelocity - leftTarget) * motorTimeConstant * (1 - decay));
+		leftVelocity = leftTarget + ((leftVelocity - leftTarget) * decay);
+
+		double rightTarget = rightPower * maxVelocity;
+		rightLength += (rightTarget * dt) + ((rightVelocity - rightTarget) * motorTimeConstant * (1 - decay));
+		rightVelocity = rightTarget + ((rightVelocity - rightTarget) * decay);
+
+		time += dt;
+	}
+
+	/**
+	 * Runs paths closed loop as fast as possible, stepping the MotionController and the simulation one period at a
+	 * time. The log holds only this run.
+	 *
+	 * @param startPosition - where the robot starts
+	 * @param timeout - the most simulated seconds to run for
+	 * @param paths - the paths to run
+	 * @return if every path finished before the timeout
+	 */
+	public final boolean runPaths(Pose startPosition, double timeout, Path... paths) {
+		MotionController controller = getMotionController();
+		if (controller.isRunning()) {
+			throw new IllegalStateException("The MotionController is already running");
+		}
+		getMotionLogger().initialize();
+		reset();
+		controller.enableManualStepping(startPosition);
+		controller.addPaths(paths);
+
+		double endTime = time + timeout;
+		while (!controller.isFinished() && (time < endTime)) {
+			controller.step();
+			simulate(period);
+		}
+		boolean finished = controller.isFinished();
+		controller.stopScheduler();
+		controller.clearMotions();
+		return finished;
+	}
+
+	/**
+	 * @return the simulated time in seconds
+	 */
+	public final double getTime() {
+		return time;
+	}
+
+	/**
+	 * @return the velocity of the left wheels
+	 */
+	public final double getLeftVelocity() {
+		return leftVelocity;
+	}
+
+	/**
+	 * @return the velocity of the right wheels
+	 */
+	public final double getRightVelocity() {
+		return rightVelocity;
+	}
+
+	/**
+	 * @return how many seconds the motors take to reach 63% of a change in power
+	 */
+	public final double getMotorTimeConstant() {
+		return motorTimeConstant;
+	}
+
+	/**
+	 * @param motorTimeConstant - how many seconds the motors take to reach 63% of a change in power. 0 is an ideal
+	 * motor.
+	 */
+	public final void setMotorTimeConstant(double motorTimeConstant) {
+		if (motorTimeConstant < 0) {
+			throw new IllegalArgumentException("motorTimeConstant must not be negative");
+		}
+		this.motorTimeConstant = motorTimeConstant;
+	}
+
+	/**
+	 * @return the simulation step used by runPaths, in seconds
+	 */
+	public final double getPeriod() {
+		return period;
+	}
+
+	/**
+	 * @param period - the simulation step used by runPaths, in seconds
+	 */
+	public final void setPeriod(double period) {
+		if (period <= 0) {
+			throw new IllegalArgumentException("period must be greater than 0");
+		}
+		this.period = period;
+	}
+
+	@Override
+	public String toString() {
+		return "SimulatedDrivetrain{" +
+			"motorTimeConstant=" + motorTimeConstant +
+			", period=" + period +
+			", time=" + time +
+			", leftLength=" + leftLength +
+			", rightLength=" + rightLength +
+			", leftVelocity=" + leftVelocity +
+			", rightVelocity=" + rightVelocity +
+			", leftPower=" + leftPower +
+			", rightPower=" + rightPower +
+			'}';
+	}
+}
@@ -2,6 +2,7 @@ package org.waltonrobotics.test;
 
 import java.util.ArrayList;
 import java.util.List;
+import org.waltonrobotics.controller.DriveKinematics;
 import org.waltonrobotics.controller.Path;
 import org.waltonrobotics.controller.PathData;
 import org.waltonrobotics.controller.Pose;
@@ -24,23 +25,23 @@ public class DebugCurves {
 
 	public static void main(String[] args) {
 
-		Path.setRobotWidth(width);
-		PointTurn pointTurn = new PointTurn(1.0, 1, new Pose(0, 0, 0), StrictMath.toRadians(270));
+		DriveKinematics kinematics = new DriveKinematics(width);
+		PointTurn pointTurn = new PointTurn(kinematics, 1.0, 1, new Pose(0, 0, 0), StrictMath.toRadians(270));
 		System.out.println("Point Turn:");
 		printPath(pointTurn);
 
 		points.add(new Pose(0, 0, StrictMath.toRadians(0)));
 		points.add(new Pose(1, 1, StrictMath.toRadians(90)));
-		BezierCurve curve = new BezierCurve(1, 1, 0, 0, isBackwards, points);
+		BezierCurve curve = new BezierCurve(kinematics, 1, 1, 0, 0, isBackwards, points);
 		System.out.println("Bezier Curve:");
 		printPath(curve);
 
-		Spline spline = new Spline(100, 3, 0, 0, StrictMath.toRadians(0), StrictMath.toRadians(270), isBackwards,
-			points);
+		Spline spline = new Spline(kinematics, 100, 3, 0, 0, StrictMath.toRadians(0), StrictMath.toRadians(270),
+			isBackwards, 1, 1, points);
 		System.out.println("\n\nSpline:");
 		printPath(spline);
 
-		Line line = new Line(1, 1, 0, 0, isBackwards, new Pose(0, 0, StrictMath.toRadians(0)),
+		Line line = new Line(kinematics, 1, 1, 0, 0, isBackwards, new Pose(0, 0, StrictMath.toRadians(0)),
 			new Pose(1, 1, StrictMath.toRadians(45)));
 		System.out.println("\n\nLine:");
 		printPath(line);
@@ -0,0 +1,96 @@
+package org.waltonrobotics.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import org.waltonrobotics.controller.DriveKinematics;
+import org.waltonrobotics.controller.MotionController;
+import org.waltonrobotics.controller.MotionEvent;
+import org.waltonrobotics.controller.MotionEventLog;
+import org.waltonrobotics.controller.MotionSnapshot;
+import org.waltonrobotics.controller.MotionState;
+import org.waltonrobotics.controller.Path;
+import org.waltonrobotics.controller.Pose;
+import org.waltonrobotics.motion.Spline;
+import org.waltonrobotics.simulation.DrivetrainGains;
+import org.waltonrobotics.simulation.FixedGainsDrivetrain;
+import org.waltonrobotics.simulation.SimulatedDrivetrain;
+
+/**
+ * Run this class to check that the next path is prefetched near the end of the current one when the paths do not
+ * start at time 0. The second run on the simulated drivetrain starts where the first one stopped, so its paths start
+ * well after 0. The third run also checks that the robot keeps MOVING until each path is finished, so being close to
+ * the end of a path does not stop the robot early.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public class DebugPrefetch {
+
+	private static final DrivetrainGains GAINS = new DrivetrainGains(0.70485, 0.3, 0.05, 0, 1, 1, 1, 0.01, 0.01, 3,
+		2);
+
+	public static void main(String[] args) {
+		SimulatedDrivetrain drivetrain = new FixedGainsDrivetrain(GAINS);
+		MotionEventLog eventLog = drivetrain.getMotionController().getEventLog();
+
+		Pose startPosition = new Pose(0, 0, 0);
+		drivetrain.runPaths(startPosition, 60, newSplines(drivetrain.getKinematics()));
+		eventLog.drainTo(new PrintStream(new ByteArrayOutputStream()));
+
+		double secondStartTime = drivetrain.getTime();
+		drivetrain.runPaths(startPosition, 60, newSplines(drivetrain.getKinematics()));
+		ByteArrayOutputStream events = new ByteArrayOutputStream();
+		eventLog.drainTo(new PrintStream(events, true));
+
+		System.out.println("Second run started at " + secondStartTime + " s");
+		System.out.print(events);
+		if (!(secondStartTime > 0)) {
+			throw new AssertionError("The second run should start after time 0, but started at " + secondStartTime);
+		}
+		if (!events.toString().contains(MotionEvent.PATH_PREFETCHED.getDescription())) {
+			throw new AssertionError("The second path of a run starting at " + secondStartTime
+				+ " s should have been prefetched");
+		}
+
+		runCheckingState(drivetrain, startPosition, 60, newSplines(drivetrain.getKinematics()));
+		eventLog.drainTo(new PrintStream(new ByteArrayOutputStream()));
+	}
+
+	/**
+	 * Runs paths like SimulatedDrivetrain.runPaths, checking after every tick that the state is MOVING while a path is
+	 * being followed
+	 */
+	private static void runCheckingState(SimulatedDrivetrain drivetrain, Pose startPosition, double timeout,
+		Path... paths) {
+		MotionController controller = drivetrain.getMotionController();
+		drivetrain.reset();
+		controller.enableManualStepping(startPosition);
+		controller.addPaths(paths);
+
+		double startTime = drivetrain.getTime();
+		double endTime = startTime + timeout;
+		while (!controller.isFinished() && (drivetrain.getTime() < endTime)) {
+			controller.step();
+			MotionSnapshot snapshot = controller.getSnapshot();
+			Path currentPath = snapshot.getCurrentPath();
+			if ((currentPath != null) && !currentPath.isFinished()
+				&& (snapshot.getMotionState() != MotionState.MOVING)) {
+				throw new AssertionError("The state was " + snapshot.getMotionState() + " at " + drivetrain.getTime()
+					+ " s while path " + snapshot.getPathNumber() + " of a run starting at " + startTime
+					+ " s was not finished");
+			}
+			drivetrain.simulate(drivetrain.getPeriod());
+		}
+		controller.stopScheduler();
+		controller.clearMotions();
+		System.out.println("The third run, starting at " + startTime + " s, stayed MOVING until its paths finished");
+	}
+
+	private static Path[] newSplines(DriveKinematics kinematics) {
+		List<Pose> first = Arrays.asList(new Pose(0, 0, 0), new Pose(2, 1), new Pose(4, 0));
+		List<Pose> second = Arrays.asList(new Pose(4, 0, 0), new Pose(6, -1), new Pose(8, 0));
+		return new Path[]{new Spline(kinematics, 2, 2, 0, 0, 0, 0, false, 1, 1, first),
+			new Spline(kinematics, 2, 2, 0, 0, 0, 0, false, 1, 1, second)};
+	}
+}
@@ -0,0 +1,74 @@
+package org.waltonrobotics.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import org.waltonrobotics.controller.DriveKinematics;
+import org.waltonrobotics.controller.MotionController;
+import org.waltonrobotics.controller.Path;
+import org.waltonrobotics.controller.Pose;
+import org.waltonrobotics.motion.Spline;
+import org.waltonrobotics.simulation.DrivetrainGains;
+import org.waltonrobotics.simulation.FixedGainsDrivetrain;
+import org.waltonrobotics.simulation.SimulatedDrivetrain;
+
+/**
+ * Run this class to check that a steady state tick of the MotionController does not allocate. It follows a long spline
+ * on the simulated drivetrain, warms the JIT up, then measures the bytes the thread allocates over the ticks in the
+ * middle of the spline. Needs a JVM with com.sun.management.ThreadMXBean.
+ *
+ * @author Russell Newton, Walton Robotics
+ */
+public class DebugTickAllocation {
+
+	private static final DrivetrainGains GAINS = new DrivetrainGains(0.70485, 0.3, 0.05, 0, 1, 1, 1, 0.01, 0.01, 3,
+		2);
+	private static final int WARM_UP_RUNS = 20;
+	private static final int MEASURED_TICKS = 1000;
+	// Reading the allocation counter can allocate a few bytes itself
+	private static final long ALLOWED_BYTES = 256;
+
+	public static void main(String[] args) {
+		SimulatedDrivetrain drivetrain = new FixedGainsDrivetrain(GAINS);
+
+		Pose startPosition = new Pose(0, 0, 0);
+		List<Pose> knots = Arrays.asList(startPosition, new Pose(4, 1), new Pose(8, -1), new Pose(12, 0));
+		for (int i = 0; i < WARM_UP_RUNS; i++) {
+			drivetrain.runPaths(startPosition, 60, newSpline(drivetrain.getKinematics(), knots));
+		}
+
+		MotionController controller = drivetrain.getMotionController();
+		drivetrain.getMotionLogger().initialize();
+		drivetrain.reset();
+		controller.enableManualStepping(startPosition);
+		controller.addPaths(newSpline(drivetrain.getKinematics(), knots));
+		// Load the path before measuring
+		for (int i = 0; i < 100; i++) {
+			controller.step();
+			drivetrain.simulate(drivetrain.getPeriod());
+		}
+
+		com.sun.management.ThreadMXBean threadMXBean =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		long before = threadMXBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < MEASURED_TICKS; i++) {
+			controller.step();
+			drivetrain.simulate(drivetrain.getPeriod());
+		}
+		long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+		controller.stopScheduler();
+
+		System.out.println(allocated + " bytes allocated over " + MEASURED_TICKS + " ticks");
+		if (allocated > ALLOWED_BYTES) {
+			throw new AssertionError("A steady state tick should not allocate, but " + MEASURED_TICKS
+				+ " ticks allocated " + allocated + " bytes");
+		}
+	}
+
+	private static Path newSpline(DriveKinematics kinematics, List<Pose> knots) {
+		Spline spline = new Spline(kinematics, 2, 2, 0, 0, 0, 0, false, 1, 1, knots);
+		spline.generateAll();
+		return spline;
+	}
+}